@@ -67,6 +67,12 @@ public class ASTPrinter implements Expr.Visitor<String> {
         return parenthesize(expr.operator.lexeme, expr.left, expr.right);
     }
 
+    // Probes are invisible, the printed tree is the one that was parsed
+    @Override
+    public String visitProbeExpr(Expr.Probe expr) {
+        return expr.expression.accept(this);
+    }
+
     @Override
     public String visitCallExpr(Call expr) {
         StringBuilder builder = new StringBuilder();
@@ -88,6 +94,21 @@ public class ASTPrinter implements Expr.Visitor<String> {
         throw new UnsupportedOperationException("Unimplemented method 'visitSetExpr'");
     }
 
+    @Override
+    public String visitIndexExpr(Expr.Index expr) {
+        return parenthesize("index", expr.object, expr.index);
+    }
+
+    @Override
+    public String visitListLiteralExpr(Expr.ListLiteral expr) {
+        return parenthesize("list", expr.elements.toArray(new Expr[0]));
+    }
+
+    @Override
+    public String visitSetIndexExpr(Expr.SetIndex expr) {
+        return parenthesize("set-index", expr.object, expr.index, expr.value);
+    }
+
     @Override
     public String visitThisExpr(This expr) {
         throw new UnsupportedOperationException("Unimplemented method 'visitThisExpr'");
@@ -1,23 +1,73 @@
 package JLox.lox;
 
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Environment {
 
+    // Stands in for nil in concurrent storage, which can't hold null values
+    static final Object NIL = new Object();
+
     public final Environment enclosing;
-    private final Map<String, Object> values = new HashMap<>();
+    private Map<String, Object> values;
+
+    // A scope is shared once another thread may reach it (see share()).
+    // Shared scopes we own keep their values in a concurrent map.
+    private boolean shared;
+    private boolean concurrent;
+
+    // A frozen scope never changes, like the natives every interpreter shares
+    private boolean frozen;
 
     Environment() {
-        enclosing = null;
+        this(null);
     }
 
     Environment(Environment enclosing) {
         this.enclosing = enclosing;
+        this.values = new HashMap<>();
+    }
+
+    // Use the given map as storage, so its owner sees every write without copying.
+    // Thread safety of a foreign map is up to its owner.
+    Environment(Environment enclosing, Map<String, Object> values) {
+        this.enclosing = enclosing;
+        this.values = values;
+        this.shared = true;
+    }
+
+    // A scope that is visible to every thread from the start, like the globals
+    static Environment concurrent(Environment enclosing) {
+        Environment environment = new Environment(enclosing, new ConcurrentHashMap<>());
+        environment.concurrent = true;
+        return environment;
+    }
+
+    // Make this scope read-only, once every variable is defined
+    Environment freeze() {
+        values = Map.copyOf(values);
+        frozen = true;
+        return this;
     }
 
     public void define(String name, Object value) {
-        values.put(name, value);
+        put(name, value);
+    }
+
+    // Number of variables in this scope alone
+    int size() {
+        return values.size();
+    }
+
+    // The values of this scope alone, nil masked as NIL, for LoxHeap
+    Collection<Object> values() {
+        return values.values();
     }
 
     Environment ancestor(int distance) {
@@ -30,16 +80,23 @@ public class Environment {
     }
 
     public Object getAt(int distance, String name) {
-        return ancestor(distance).values.get(name);
+        return unmask(ancestor(distance).values.get(name));
     }
 
     void assignAt(int distance, Token name, Object value) {
-        ancestor(distance).values.put(name.lexeme, value);
+        ancestor(distance).put(name.lexeme, value);
     }
 
     public void assign(Token name, Object value) {
         if (values.containsKey(name.lexeme)) {
-            values.put(name.lexeme, value);
+            put(name.lexeme, value);
+            return;
+        }
+
+        // Assigning a native defines a global of that name, which shadows it
+        // for this interpreter alone
+        if (enclosing != null && enclosing.frozen && enclosing.values.containsKey(name.lexeme)) {
+            put(name.lexeme, value);
             return;
         }
 
@@ -52,8 +109,9 @@ public class Environment {
     }
 
     public Object get(Token name) {
-        if (values.containsKey(name.lexeme)) {
-            return values.get(name.lexeme);
+        Object value = values.get(name.lexeme);
+        if (value != null || values.containsKey(name.lexeme)) {
+            return unmask(value);
         }
 
         if (enclosing != null) {
@@ -62,4 +120,100 @@ public class Environment {
 
         throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
     }
+
+    private void put(String name, Object value) {
+        if (shared) {
+            publish(value);
+            // The owner of a foreign map expects Strings (see LoxString)
+            if (!concurrent && value instanceof LoxString) {
+                value = ((LoxString) value).flatten();
+            }
+        }
+        values.put(name, concurrent ? mask(value) : value);
+    }
+
+    // Make this scope and every enclosing one safe to reach from other threads.
+    // Must run before another thread can see the scope, e.g. right before a
+    // closure over it is spawned, so the switch itself never races.
+    void share() {
+        for (Environment environment = this; environment != null && !environment.shared;
+                environment = environment.enclosing) {
+            environment.shared = true;
+
+            Map<String, Object> concurrentValues = new ConcurrentHashMap<>();
+            for (Map.Entry<String, Object> entry : environment.values.entrySet()) {
+                publish(entry.getValue());
+                concurrentValues.put(entry.getKey(), mask(entry.getValue()));
+            }
+            environment.values = concurrentValues;
+            environment.concurrent = true;
+        }
+    }
+
+    // A value stored where other threads can see it shares what every function
+    // in it captured: functions held by lists and maps, and the methods of a
+    // class or of an instance's class, included
+    static void publish(Object value) {
+        if (value instanceof LoxFunction) {
+            ((LoxFunction) value).share();
+        } else if (value instanceof LoxClass) {
+            ((LoxClass) value).share();
+        } else if (value instanceof LoxInstance) {
+            ((LoxInstance) value).klass().share();
+        } else if (value instanceof LoxList || value instanceof LoxMap) {
+            publishElements(value);
+        }
+    }
+
+    // Walks nested lists and maps with a stack of its own, since they can be
+    // deep or contain themselves. Lists of numbers are skipped without a look.
+    private static void publishElements(Object container) {
+        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayDeque<Object> pending = new ArrayDeque<>();
+        pending.push(container);
+        while (!pending.isEmpty()) {
+            Object value = pending.pop();
+            if (!seen.add(value)) {
+                continue;
+            }
+
+            if (value instanceof LoxList) {
+                LoxList list = (LoxList) value;
+                if (list.holdsNumbers()) {
+                    continue;
+                }
+                for (int i = 0; i < list.size(); i++) {
+                    publishElement(list.get(i), pending);
+                }
+            } else {
+                LoxMap map = (LoxMap) value;
+                for (Object key : map.keys()) {
+                    publishElement(key, pending);
+                }
+                for (Object element : map.values()) {
+                    publishElement(element, pending);
+                }
+            }
+        }
+    }
+
+    private static void publishElement(Object element, ArrayDeque<Object> pending) {
+        if (element instanceof LoxFunction) {
+            ((LoxFunction) element).share();
+        } else if (element instanceof LoxClass) {
+            ((LoxClass) element).share();
+        } else if (element instanceof LoxInstance) {
+            ((LoxInstance) element).klass().share();
+        } else if (element instanceof LoxList || element instanceof LoxMap) {
+            pending.push(element);
+        }
+    }
+
+    static Object mask(Object value) {
+        return value == null ? NIL : value;
+    }
+
+    static Object unmask(Object value) {
+        return value == NIL ? null : value;
+    }
 }
@@ -0,0 +1,66 @@
+package JLox.lox;
+
+import java.io.PrintStream;
+
+/**
+ * Collects the compile and runtime errors of a single interpreter and prints
+ * them to that interpreter's error stream.
+ * Each run owns its reporter, so the error flags of one script never leak into
+ * another script running in the same JVM.
+ */
+public class ErrorReporter {
+
+    // Exit codes used by jlox (see sysexits.h)
+    static final int EX_DATAERR = 65;
+    static final int EX_SOFTWARE = 70;
+
+    private final PrintStream err;
+
+    // Flags to track errors and runtime errors.
+    // These are used to indicate if the program should exit with an error code.
+    boolean hadError = false;
+    boolean hadRuntimeError = false;
+
+    public ErrorReporter(PrintStream err) {
+        this.err = err;
+    }
+
+    // Handle error without token
+    public void error(int line, String message) {
+        report(line, "", message);
+    }
+
+    // Handle error with token
+    public void error(Token token, String message) {
+        if (token.type == TokenType.EOF) {
+            report(token.line, " at end", message);
+        } else {
+            report(token.line, " at '" + token.lexeme + "'", message);
+        }
+    }
+
+    // Report the error message to the user
+    public void report(int line, String where, String message) {
+        err.println("[line " + line + "] Error" + where + ": " + message);
+        hadError = true;
+    }
+
+    void runtimeError(RuntimeError error) {
+        err.println(error.getMessage() +
+                "\n[line " + error.token.line + "]");
+        hadRuntimeError = true;
+        LoxRuntime.runtimeErrors.increment();
+        LoxEvents.runtimeError(error);
+    }
+
+    // Exit code of the run so far: 65 for compile errors, 70 for runtime errors
+    public int exitCode() {
+        if (hadError) {
+            return EX_DATAERR;
+        }
+        if (hadRuntimeError) {
+            return EX_SOFTWARE;
+        }
+        return 0;
+    }
+}
@@ -9,14 +9,23 @@ public abstract class Expr {
     R visitGetExpr(Get expr);
     R visitCallExpr(Call expr);
     R visitGroupingExpr(Grouping expr);
+    R visitIndexExpr(Index expr);
+    R visitListLiteralExpr(ListLiteral expr);
     R visitLiteralExpr(Literal expr);
     R visitLogicalExpr(Logical expr);
+    R visitProbeExpr(Probe expr);
     R visitSetExpr(Set expr);
+    R visitSetIndexExpr(SetIndex expr);
     R visitSuperExpr(Super expr);
     R visitThisExpr(This expr);
     R visitUnaryExpr(Unary expr);
     R visitVariableExpr(Variable expr);
   }
+  // Number of scopes between this expression and the declaration it refers
+  // to. Written once by the Resolver, GLOBAL means look it up in the globals.
+  static final int GLOBAL = -1;
+  int depth = GLOBAL;
+
   static class Assign extends Expr {
     Assign(Token name, Expr value) {
       this.name = name;
@@ -76,6 +85,10 @@ public abstract class Expr {
     final Expr callee;
     final Token paren;
     final List<Expr> arguments;
+
+    // Whether this call is the value of a return statement, so the function
+    // making it can be left before it runs. Written once by the Resolver.
+    boolean tailCall;
   }
   static class Grouping extends Expr {
     Grouping(Expr expression) {
@@ -89,6 +102,36 @@ public abstract class Expr {
 
     final Expr expression;
   }
+  static class Index extends Expr {
+    Index(Expr object, Token bracket, Expr index) {
+      this.object = object;
+      this.bracket = bracket;
+      this.index = index;
+    }
+
+    @Override
+    <R> R accept(Visitor<R> visitor) {
+      return visitor.visitIndexExpr(this);
+    }
+
+    final Expr object;
+    final Token bracket;
+    final Expr index;
+  }
+  static class ListLiteral extends Expr {
+    ListLiteral(Token bracket, List<Expr> elements) {
+      this.bracket = bracket;
+      this.elements = elements;
+    }
+
+    @Override
+    <R> R accept(Visitor<R> visitor) {
+      return visitor.visitListLiteralExpr(this);
+    }
+
+    final Token bracket;
+    final List<Expr> elements;
+  }
   static class Literal extends Expr {
     Literal(Object value) {
       this.value = value;
@@ -117,6 +160,20 @@ public abstract class Expr {
     final Token operator;
     final Expr right;
   }
+  static class Probe extends Expr {
+    Probe(Expr expression, LoxProbe probe) {
+      this.expression = expression;
+      this.probe = probe;
+    }
+
+    @Override
+    <R> R accept(Visitor<R> visitor) {
+      return visitor.visitProbeExpr(this);
+    }
+
+    final Expr expression;
+    final LoxProbe probe;
+  }
   static class Set extends Expr {
     Set(Expr object, Token name, Expr value) {
       this.object = object;
@@ -133,6 +190,24 @@ public abstract class Expr {
     final Token name;
     final Expr value;
   }
+  static class SetIndex extends Expr {
+    SetIndex(Expr object, Token bracket, Expr index, Expr value) {
+      this.object = object;
+      this.bracket = bracket;
+      this.index = index;
+      this.value = value;
+    }
+
+    @Override
+    <R> R accept(Visitor<R> visitor) {
+      return visitor.visitSetIndexExpr(this);
+    }
+
+    final Expr object;
+    final Token bracket;
+    final Expr index;
+    final Expr value;
+  }
   static class Super extends Expr {
     Super(Token keyword, Token method) {
       this.keyword = keyword;
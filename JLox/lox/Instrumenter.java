@@ -0,0 +1,241 @@
+package JLox.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copies a parsed program with every node that matches an attached tool's
+ * filter wrapped in an Expr.Probe or Stmt.Probe. It runs between the Parser
+ * and the Resolver, and only when tools are attached, so the AST of an engine
+ * without tools is exactly what the Parser built.
+ *
+ * Leaves that are not wrapped are shared with the parsed program, which is
+ * thrown away afterwards. Methods of a class are never wrapped themselves,
+ * since the class needs them as functions, but their bodies are.
+ */
+class Instrumenter implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+
+    record Attachment(LoxProbeFilter filter, LoxTool tool) {
+    }
+
+    private final List<Attachment> attachments;
+
+    // Innermost function being copied, null at the top level
+    private String function;
+
+    // Line of the statement being copied, for expressions without a token
+    private int line;
+
+    Instrumenter(List<Attachment> attachments) {
+        this.attachments = attachments;
+    }
+
+    List<Stmt> instrument(List<Stmt> statements) {
+        List<Stmt> copy = new ArrayList<>(statements.size());
+        for (Stmt statement : statements) {
+            copy.add(statement(statement));
+        }
+        return copy;
+    }
+
+    private Stmt statement(Stmt stmt) {
+        int enclosing = line;
+        line = stmt.line;
+        try {
+            return stmt.accept(this);
+        } finally {
+            line = enclosing;
+        }
+    }
+
+    private Expr expression(Expr expr) {
+        return expr == null ? null : expr.accept(this);
+    }
+
+    private List<Expr> expressions(List<Expr> exprs) {
+        List<Expr> copy = new ArrayList<>(exprs.size());
+        for (Expr expr : exprs) {
+            copy.add(expression(expr));
+        }
+        return copy;
+    }
+
+    // The first tool attached ends up outermost, so it sees the node first
+    private Stmt wrap(Stmt stmt, int line) {
+        stmt.line = line;
+        String kind = stmt.getClass().getSimpleName();
+        for (int i = attachments.size() - 1; i >= 0; i--) {
+            Attachment attachment = attachments.get(i);
+            if (attachment.filter().matches(kind, line, function)) {
+                stmt = new Stmt.Probe(stmt, new LoxProbe(kind, line, function, true, attachment.tool()));
+                stmt.line = line;
+            }
+        }
+        return stmt;
+    }
+
+    private Expr wrap(Expr expr, int line) {
+        String kind = expr.getClass().getSimpleName();
+        for (int i = attachments.size() - 1; i >= 0; i--) {
+            Attachment attachment = attachments.get(i);
+            if (attachment.filter().matches(kind, line, function)) {
+                expr = new Expr.Probe(expr, new LoxProbe(kind, line, function, false, attachment.tool()));
+            }
+        }
+        return expr;
+    }
+
+    private Stmt.Function function(Stmt.Function stmt, String name) {
+        String enclosing = function;
+        function = name;
+        try {
+            Stmt.Function copy = new Stmt.Function(stmt.name, stmt.params, instrument(stmt.body));
+            copy.line = stmt.line;
+            return copy;
+        } finally {
+            function = enclosing;
+        }
+    }
+
+    @Override
+    public Stmt visitBlockStmt(Stmt.Block stmt) {
+        return wrap(new Stmt.Block(instrument(stmt.statements)), stmt.line);
+    }
+
+    @Override
+    public Stmt visitClassStmt(Stmt.Class stmt) {
+        List<Stmt.Function> methods = new ArrayList<>(stmt.methods.size());
+        for (Stmt.Function method : stmt.methods) {
+            methods.add(function(method, stmt.name.lexeme + "." + method.name.lexeme));
+        }
+        return wrap(new Stmt.Class(stmt.name, stmt.superclass, methods), stmt.line);
+    }
+
+    @Override
+    public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+        return wrap(new Stmt.Expression(expression(stmt.expression)), stmt.line);
+    }
+
+    @Override
+    public Stmt visitFunctionStmt(Stmt.Function stmt) {
+        return wrap(function(stmt, stmt.name.lexeme), stmt.line);
+    }
+
+    @Override
+    public Stmt visitIfStmt(Stmt.If stmt) {
+        Stmt elseBranch = stmt.elseBranch == null ? null : statement(stmt.elseBranch);
+        return wrap(new Stmt.If(expression(stmt.codition), statement(stmt.thenBranch), elseBranch), stmt.line);
+    }
+
+    @Override
+    public Stmt visitPrintStmt(Stmt.Print stmt) {
+        return wrap(new Stmt.Print(expression(stmt.expression)), stmt.line);
+    }
+
+    @Override
+    public Stmt visitProbeStmt(Stmt.Probe stmt) {
+        Stmt.Probe copy = new Stmt.Probe(statement(stmt.statement), stmt.probe);
+        copy.line = stmt.line;
+        return copy;
+    }
+
+    @Override
+    public Stmt visitReturnStmt(Stmt.Return stmt) {
+        return wrap(new Stmt.Return(stmt.keyword, expression(stmt.value)), stmt.line);
+    }
+
+    @Override
+    public Stmt visitVarStmt(Stmt.Var stmt) {
+        return wrap(new Stmt.Var(stmt.name, expression(stmt.initializer)), stmt.line);
+    }
+
+    @Override
+    public Stmt visitWhileStmt(Stmt.While stmt) {
+        return wrap(new Stmt.While(expression(stmt.condition), statement(stmt.body)), stmt.line);
+    }
+
+    @Override
+    public Expr visitAssignExpr(Expr.Assign expr) {
+        return wrap(new Expr.Assign(expr.name, expression(expr.value)), expr.name.line);
+    }
+
+    @Override
+    public Expr visitBinaryExpr(Expr.Binary expr) {
+        return wrap(new Expr.Binary(expression(expr.left), expr.operator, expression(expr.right)),
+                expr.operator.line);
+    }
+
+    @Override
+    public Expr visitGetExpr(Expr.Get expr) {
+        return wrap(new Expr.Get(expression(expr.object), expr.name), expr.name.line);
+    }
+
+    @Override
+    public Expr visitCallExpr(Expr.Call expr) {
+        return wrap(new Expr.Call(expression(expr.callee), expr.paren, expressions(expr.arguments)),
+                expr.paren.line);
+    }
+
+    @Override
+    public Expr visitGroupingExpr(Expr.Grouping expr) {
+        return wrap(new Expr.Grouping(expression(expr.expression)), line);
+    }
+
+    @Override
+    public Expr visitIndexExpr(Expr.Index expr) {
+        return wrap(new Expr.Index(expression(expr.object), expr.bracket, expression(expr.index)),
+                expr.bracket.line);
+    }
+
+    @Override
+    public Expr visitListLiteralExpr(Expr.ListLiteral expr) {
+        return wrap(new Expr.ListLiteral(expr.bracket, expressions(expr.elements)), expr.bracket.line);
+    }
+
+    @Override
+    public Expr visitLiteralExpr(Expr.Literal expr) {
+        return wrap(expr, line);
+    }
+
+    @Override
+    public Expr visitLogicalExpr(Expr.Logical expr) {
+        return wrap(new Expr.Logical(expression(expr.left), expr.operator, expression(expr.right)),
+                expr.operator.line);
+    }
+
+    @Override
+    public Expr visitProbeExpr(Expr.Probe expr) {
+        return new Expr.Probe(expression(expr.expression), expr.probe);
+    }
+
+    @Override
+    public Expr visitSetExpr(Expr.Set expr) {
+        return wrap(new Expr.Set(expression(expr.object), expr.name, expression(expr.value)), expr.name.line);
+    }
+
+    @Override
+    public Expr visitSetIndexExpr(Expr.SetIndex expr) {
+        return wrap(new Expr.SetIndex(expression(expr.object), expr.bracket, expression(expr.index),
+                expression(expr.value)), expr.bracket.line);
+    }
+
+    @Override
+    public Expr visitSuperExpr(Expr.Super expr) {
+        return wrap(expr, expr.keyword.line);
+    }
+
+    @Override
+    public Expr visitThisExpr(Expr.This expr) {
+        return wrap(expr, expr.keyword.line);
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Expr.Unary expr) {
+        return wrap(new Expr.Unary(expr.operator, expression(expr.right)), expr.operator.line);
+    }
+
+    @Override
+    public Expr visitVariableExpr(Expr.Variable expr) {
+        return wrap(expr, expr.name.line);
+    }
+}
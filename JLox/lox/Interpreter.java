@@ -4,55 +4,108 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
-    private final Environment globals = new Environment();
-    private Environment environment = globals;
-    private final Map<Expr, Integer> locals = new HashMap<>();
+    private final Environment globals;
 
-    Interpreter() {
-        globals.define("clock", new LoxCallable() {
+    // The scope being executed, also switched by LoxMachine
+    Environment environment;
 
-            @Override
-            public int arity() {
-                return 0;
-            }
+    // Where this interpreter writes script output and reports its errors
+    private final LoxOutput out;
+    final ErrorReporter reporter;
 
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return (double) System.currentTimeMillis() / 1000.0;
-            }
+    // Runs the tasks spawned by this interpreter and its forks
+    final TaskScheduler tasks;
 
-            @Override
-            public String toString() {
-                return "<native fn>";
-            }
+    // Runs calls on a stack of its own in -Djlox.stack mode, see LoxMachine
+    final LoxMachine machine = LoxMachine.ENABLED ? new LoxMachine(this) : null;
 
-        });
+    // What this interpreter did, for LoxRuntimeMXBean
+    final LoxRuntime.Counters counters = new LoxRuntime.Counters();
+
+    // Shadow stack of the running Lox functions, for LoxSampler
+    final LoxSampler.Stack calls = LoxSampler.ENABLED ? new LoxSampler.Stack() : null;
+
+    // Whether jlox.Globals reports on our globals. Decided when a run starts
+    // during a recording, so no lock is taken while none is running.
+    private boolean registered;
+
+    Interpreter(LoxOutput out, ErrorReporter reporter) {
+        this(Environment.concurrent(Natives.environment()), out, reporter, new TaskScheduler());
+    }
+
+    // Store global variables in the given map, e.g. the bindings of an embedder.
+    // Native functions live one scope further out, so they never leak into it.
+    Interpreter(Map<String, Object> globalValues, LoxOutput out, ErrorReporter reporter) {
+        this(new Environment(Natives.environment(), globalValues), out, reporter, new TaskScheduler());
+    }
+
+    private Interpreter(Environment globals, LoxOutput out, ErrorReporter reporter, TaskScheduler tasks) {
+        this.globals = globals;
+        this.environment = globals;
+        this.out = out;
+        this.reporter = reporter;
+        this.tasks = tasks;
+    }
+
+    // An interpreter for another thread: same globals and output, own call stack
+    Interpreter fork() {
+        return new Interpreter(globals, out, reporter, tasks);
     }
 
-    @SuppressWarnings("incomplete-switch")
     @Override
     public Object visitBinaryExpr(Expr.Binary expr) {
-        Object left = evaluate(expr.left);
-        Object right = evaluate(expr.right);
+        // s + a + b appends to the concatenation s + a (see LoxString)
+        Object left = expr.operator.type == TokenType.PLUS ? evaluateUnflattened(expr.left) : evaluate(expr.left);
+        Object right;
+
+        // Arithmetic on a number read from a list or buffer, as in
+        // sum = sum + list[i], takes the element straight from the unboxed storage
+        if (left instanceof Double && expr.right instanceof Expr.Index) {
+            Expr.Index index = (Expr.Index) expr.right;
+            Object object = evaluate(index.object);
+            Object key = evaluate(index.index);
+            if (isArithmetic(expr.operator.type)) {
+                if (object instanceof LoxList && ((LoxList) object).holdsNumbers()) {
+                    LoxList list = (LoxList) object;
+                    return arithmetic(expr.operator, (double) left,
+                            list.getNumber(listIndex(index.bracket, list, key)));
+                }
+                if (object instanceof LoxFloat64Buffer) {
+                    LoxFloat64Buffer buffer = (LoxFloat64Buffer) object;
+                    return arithmetic(expr.operator, (double) left,
+                            buffer.get(bufferIndex(index.bracket, buffer, key)));
+                }
+            }
+            right = index(index.bracket, object, key);
+        } else {
+            right = evaluate(expr.right);
+        }
+
+        return binary(expr.operator, left, right);
+    }
 
-        switch (expr.operator.type) {
+    // left operator right, with left unflattened for +
+    @SuppressWarnings("incomplete-switch")
+    Object binary(Token operator, Object left, Object right) {
+        switch (operator.type) {
             case TokenType.GREATER:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double) left > (double) right;
             case TokenType.GREATER_EQUAL:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double) left >= (double) right;
             case TokenType.LESS:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double) left < (double) right;
             case TokenType.LESS_EQUAL:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double) left <= (double) right;
             case TokenType.MINUS:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double) left - (double) right;
             case TokenType.BANG_EQUAL:
                 return !isEqual(left, right);
@@ -64,22 +117,30 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
                 }
 
                 if (left instanceof String && right instanceof String) {
-                    return (String) left + (String) right;
+                    return LoxString.concat((String) left, (String) right);
                 }
 
                 if (left instanceof String && right instanceof Double) {
-                    return (String) left + stringify(right);
+                    return LoxString.concat((String) left, (double) right);
+                }
+
+                if (left instanceof LoxString && right instanceof String) {
+                    return ((LoxString) left).append((String) right);
+                }
+
+                if (left instanceof LoxString && right instanceof Double) {
+                    return ((LoxString) left).append((double) right);
                 }
 
-                throw new RuntimeError(expr.operator, "Operands must be two numbers or two strings.");
+                throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
             case TokenType.SLASH:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 if ((double) right == 0.0) {
-                    throw new RuntimeError(expr.operator, "Division by zero.");
+                    throw new RuntimeError(operator, "Division by zero.");
                 }
                 return (double) left / (double) right;
             case TokenType.STAR:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double) left * (double) right;
         }
 
@@ -87,6 +148,51 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return null;
     }
 
+    private static boolean isArithmetic(TokenType type) {
+        switch (type) {
+            case TokenType.GREATER:
+            case TokenType.GREATER_EQUAL:
+            case TokenType.LESS:
+            case TokenType.LESS_EQUAL:
+            case TokenType.MINUS:
+            case TokenType.PLUS:
+            case TokenType.SLASH:
+            case TokenType.STAR:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // The number operators of visitBinaryExpr, on unboxed operands
+    @SuppressWarnings("incomplete-switch")
+    private Object arithmetic(Token operator, double left, double right) {
+        switch (operator.type) {
+            case TokenType.GREATER:
+                return left > right;
+            case TokenType.GREATER_EQUAL:
+                return left >= right;
+            case TokenType.LESS:
+                return left < right;
+            case TokenType.LESS_EQUAL:
+                return left <= right;
+            case TokenType.MINUS:
+                return left - right;
+            case TokenType.PLUS:
+                return left + right;
+            case TokenType.SLASH:
+                if (right == 0.0) {
+                    throw new RuntimeError(operator, "Division by zero.");
+                }
+                return left / right;
+            case TokenType.STAR:
+                return left * right;
+        }
+
+        // Unreachable
+        return null;
+    }
+
     @Override
     public Object visitGroupingExpr(Expr.Grouping expr) {
         return evaluate(expr.expression);
@@ -97,14 +203,16 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return expr.value;
     }
 
-    @SuppressWarnings("incomplete-switch")
     @Override
     public Object visitUnaryExpr(Expr.Unary expr) {
-        Object right = evaluate(expr.right);
+        return unary(expr.operator, evaluate(expr.right));
+    }
 
-        switch (expr.operator.type) {
+    @SuppressWarnings("incomplete-switch")
+    Object unary(Token operator, Object right) {
+        switch (operator.type) {
             case TokenType.MINUS:
-                checkNumberOperand(expr.operator, right);
+                checkNumberOperand(operator, right);
                 return -(double) right;
             case TokenType.BANG:
                 return !isTruthy(right);
@@ -121,10 +229,12 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitAssignExpr(Expr.Assign expr) {
-        Object value = evaluate(expr.value);
-        Integer distance = locals.get(expr);
-        if (distance != null) {
-            environment.assignAt(distance, expr.name, value);
+        return assign(expr, evaluateUnflattened(expr.value));
+    }
+
+    Object assign(Expr.Assign expr, Object value) {
+        if (expr.depth != Expr.GLOBAL) {
+            environment.assignAt(expr.depth, expr.name, value);
         } else {
             globals.assign(expr.name, value);
         }
@@ -157,42 +267,141 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             arguments.add(evaluate(argument));
         }
 
+        LoxCallable function = callable(expr, callee, arguments.size());
+
+        // A call in tail position goes back to LoxFunction.call() of the caller,
+        // which runs it after the caller's invocation has returned
+        if (expr.tailCall && function instanceof LoxFunction) {
+            return new LoxFunction.TailCall((LoxFunction) function, arguments);
+        }
+
+        try {
+            return function.call(this, arguments);
+        } catch (RuntimeError error) {
+            // Errors raised by natives don't know where they were called from
+            if (error.token == null) {
+                throw new RuntimeError(expr.paren, error.getMessage());
+            }
+            throw error;
+        }
+    }
+
+    // The callee of a call with the given number of arguments, counted as a call
+    LoxCallable callable(Expr.Call expr, Object callee, int arguments) {
         if (!(callee instanceof LoxCallable)) {
             throw new RuntimeError(expr.paren, "Can only call functions and classes.");
         }
 
         LoxCallable function = (LoxCallable) callee;
 
-        if (arguments.size() != function.arity()) {
+        if (arguments != function.arity()) {
             throw new RuntimeError(expr.paren,
-                    "Expected " + function.arity() + " arguments but got " + arguments.size() + ".");
+                    "Expected " + function.arity() + " arguments but got " + arguments + ".");
         }
-        return function.call(this, arguments);
+
+        if (LoxSampler.ENABLED) {
+            calls.call(expr.paren.line);
+        }
+        counters.calls++;
+        return function;
     }
 
     @Override
-    public Object visitGetExpr(Expr.Get expr) {
+    public Object visitIndexExpr(Expr.Index expr) {
         Object object = evaluate(expr.object);
-        if (object instanceof LoxInstance) {
-            return ((LoxInstance) object).get(expr.name);
+        return index(expr.bracket, object, evaluate(expr.index));
+    }
+
+    @Override
+    public Object visitSetIndexExpr(Expr.SetIndex expr) {
+        Object object = evaluate(expr.object);
+        Object index = evaluate(expr.index);
+        checkIndexTarget(expr.bracket, object, index);
+        return setIndex(expr.bracket, object, index, evaluate(expr.value));
+    }
+
+    // Fail like object[index] = value would, before the value is evaluated
+    void checkIndexTarget(Token bracket, Object object, Object index) {
+        if (object instanceof LoxList) {
+            listIndex(bracket, (LoxList) object, index);
+            return;
+        }
+
+        if (object instanceof LoxMap) {
+            return;
+        }
+
+        if (object instanceof LoxFloat64Buffer) {
+            LoxFloat64Buffer buffer = (LoxFloat64Buffer) object;
+            bufferIndex(bracket, buffer, index);
+            if (buffer.isReadOnly()) {
+                throw new RuntimeError(bracket, "Buffer is read-only.");
+            }
+            return;
+        }
+
+        throw new RuntimeError(bracket, "Only lists, maps and buffers can be indexed.");
+    }
+
+    // object[index] = value, once checkIndexTarget() passed
+    Object setIndex(Token bracket, Object object, Object index, Object value) {
+        if (object instanceof LoxList) {
+            LoxList list = (LoxList) object;
+            list.set(listIndex(bracket, list, index), value);
+            return value;
+        }
+
+        if (object instanceof LoxMap) {
+            ((LoxMap) object).put(index, value);
+            return value;
         }
 
-        throw new RuntimeError(expr.name, "Only instances have properties.");
+        LoxFloat64Buffer buffer = (LoxFloat64Buffer) object;
+        if (!(value instanceof Double)) {
+            throw new RuntimeError(bracket, "Buffers can only hold numbers.");
+        }
+        buffer.set(bufferIndex(bracket, buffer, index), (double) value);
+        return value;
     }
 
     @Override
-    public Object visitSetExpr(Expr.Set expr) {
-        Object object = evaluate(expr.object);
+    public Object visitListLiteralExpr(Expr.ListLiteral expr) {
+        LoxList list = new LoxList();
+        for (Expr element : expr.elements) {
+            list.add(evaluate(element));
+        }
+        return list;
+    }
 
-        if (!(object instanceof LoxInstance)) {
-            throw new RuntimeError(expr.name, "Only instances have fields.");
+    @Override
+    public Object visitGetExpr(Expr.Get expr) {
+        return get(expr.name, evaluate(expr.object));
+    }
+
+    Object get(Token name, Object object) {
+        if (object instanceof LoxInstance) {
+            return ((LoxInstance) object).get(name, counters);
         }
 
+        throw new RuntimeError(name, "Only instances have properties.");
+    }
+
+    @Override
+    public Object visitSetExpr(Expr.Set expr) {
+        LoxInstance object = fieldsOf(expr.name, evaluate(expr.object));
         Object value = evaluate(expr.value);
-        ((LoxInstance) object).set(expr.name, value);
+        object.set(expr.name, value);
         return value;
     }
 
+    // The instance whose field is about to be set
+    LoxInstance fieldsOf(Token name, Object object) {
+        if (!(object instanceof LoxInstance)) {
+            throw new RuntimeError(name, "Only instances have fields.");
+        }
+        return (LoxInstance) object;
+    }
+
     @Override
     public Object visitThisExpr(Expr.This expr) {
         return lookUpVariable(expr.keyword, expr);
@@ -200,23 +409,65 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitExpressionStmt(Stmt.Expression stmt) {
-        evaluate(stmt.expression);
+        // The value is dropped, no need to flatten it
+        evaluateUnflattened(stmt.expression);
         return null;
     }
 
     @Override
     public Void visitPrintStmt(Stmt.Print stmt) {
-        Object value = evaluate(stmt.expression);
-        System.out.println(stringify(value));
+        print(evaluate(stmt.expression));
+        return null;
+    }
+
+    void print(Object value) {
+        if (value instanceof Double) {
+            out.println((double) value);
+        } else {
+            out.println(stringify(value));
+        }
+    }
+
+    // The statement is run with accept() rather than execute(), so it is
+    // counted and profiled once, as the probe
+    @Override
+    public Void visitProbeStmt(Stmt.Probe stmt) {
+        probe(stmt.probe, () -> {
+            stmt.statement.accept(this);
+            return null;
+        });
         return null;
     }
 
+    @Override
+    public Object visitProbeExpr(Expr.Probe expr) {
+        return probe(expr.probe, () -> evaluateUnflattened(expr.expression));
+    }
+
+    // Run a probed node between the callbacks of its tool. A return statement
+    // leaves the node with the returned value.
+    private Object probe(LoxProbe probe, Supplier<Object> node) {
+        probe.tool.onEnter(probe);
+        Object value;
+        try {
+            value = node.get();
+        } catch (Return returned) {
+            probe.tool.onReturn(probe, returned.value);
+            throw returned;
+        } catch (RuntimeError error) {
+            probe.tool.onException(probe, error);
+            throw error;
+        }
+        probe.tool.onReturn(probe, value instanceof LoxString ? ((LoxString) value).flatten() : value);
+        return value;
+    }
+
     @Override
     public Void visitVarStmt(Stmt.Var stmt) {
         Object value = null;
 
         if (stmt.initializer != null) {
-            value = evaluate(stmt.initializer);
+            value = evaluateUnflattened(stmt.initializer);
         }
 
         environment.define(stmt.name.lexeme, value);
@@ -280,11 +531,13 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         if (stmt.superclass != null) {
             environment = new Environment(environment);
             environment.define("super", superclass);
+            counters.environments++;
         }
 
         Map<String, LoxFunction> methods = new HashMap<>();
         for (Stmt.Function method : stmt.methods) {
-            LoxFunction function = new LoxFunction(method, environment, method.name.lexeme.equals("init"));
+            LoxFunction function = new LoxFunction(method, environment, method.name.lexeme.equals("init"),
+                    stmt.name.lexeme);
             methods.put(method.name.lexeme, function);
         }
 
@@ -297,27 +550,38 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     }
 
     private Object evaluate(Expr expr) {
+        Object value = expr.accept(this);
+        if (value instanceof LoxString) {
+            return ((LoxString) value).flatten();
+        }
+        return value;
+    }
+
+    // For values that go into a variable or get appended to, where an
+    // unfinished concatenation can stay as it is
+    private Object evaluateUnflattened(Expr expr) {
         return expr.accept(this);
     }
 
     private void execute(Stmt stmt) {
+        counters.statement();
+        if (LoxProfiler.ENABLED) {
+            LoxProfiler.statement(stmt.line);
+        }
         stmt.accept(this);
     }
 
-    public void resolve(Expr expr, int depth) {
-        locals.put(expr, depth);
-    }
-
     private Object lookUpVariable(Token name, Expr expr) {
-        Integer distance = locals.get(expr);
-        if (distance != null) {
-            return environment.getAt(distance, name.lexeme);
+        if (expr.depth != Expr.GLOBAL) {
+            return environment.getAt(expr.depth, name.lexeme);
         } else {
             return globals.get(name);
         }
     }
 
+    // Run the statements in a new scope
     void executeBlock(List<Stmt> statements, Environment environment) {
+        counters.environments++;
         Environment previous = this.environment;
         try {
             this.environment = environment;
@@ -330,7 +594,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         }
     }
 
-    private boolean isTruthy(Object object) {
+    boolean isTruthy(Object object) {
         // false and nil are falsey, and everything else is truthy.
         if (object == null) {
             return false;
@@ -352,6 +616,13 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             return false;
         }
 
+        // Literals and map keys are interned, so equal strings are usually the
+        // same object. Different hashes (cached by String) rule out equality
+        // without comparing a single character.
+        if (a instanceof String && b instanceof String) {
+            return a == b || (a.hashCode() == b.hashCode() && a.equals(b));
+        }
+
         return a.equals(b);
     }
 
@@ -370,46 +641,171 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         throw new RuntimeError(operator, "Operands must be numbers.");
     }
 
-    private String stringify(Object object) {
+    // object[index] for a list or buffer element or a map entry, nil for a missing key
+    Object index(Token bracket, Object object, Object index) {
+        if (object instanceof LoxList) {
+            LoxList list = (LoxList) object;
+            return list.get(listIndex(bracket, list, index));
+        }
+
+        if (object instanceof LoxMap) {
+            return ((LoxMap) object).get(index);
+        }
+
+        if (object instanceof LoxFloat64Buffer) {
+            LoxFloat64Buffer buffer = (LoxFloat64Buffer) object;
+            return buffer.get(bufferIndex(bracket, buffer, index));
+        }
+
+        throw new RuntimeError(bracket, "Only lists, maps and buffers can be indexed.");
+    }
+
+    private int listIndex(Token bracket, LoxList list, Object index) {
+        return (int) checkIndex(bracket, index, list.size(), "List");
+    }
+
+    private long bufferIndex(Token bracket, LoxFloat64Buffer buffer, Object index) {
+        return checkIndex(bracket, index, buffer.length(), "Buffer");
+    }
+
+    private long checkIndex(Token bracket, Object index, long size, String kind) {
+        if (!(index instanceof Double)) {
+            throw new RuntimeError(bracket, kind + " index must be an integer.");
+        }
+
+        double value = (double) index;
+        long position = (long) value;
+        if (position != value) {
+            throw new RuntimeError(bracket, kind + " index must be an integer.");
+        }
+        if (position < 0 || position >= size) {
+            throw new RuntimeError(bracket, kind + " index out of range.");
+        }
+        return position;
+    }
+
+    static String stringify(Object object) {
         if (object == null) {
             return "nil";
         }
 
         if (object instanceof Double) {
-            String text = object.toString();
-
-            if (text.endsWith(".0")) {
-                text = text.substring(0, text.length() - 2);
-            }
-            return text;
+            return NumberFormatter.format((double) object);
         }
 
         return object.toString();
     }
 
     void interpret(List<Stmt> statements) {
+        long start = LoxProfiler.ENABLED ? System.nanoTime() : 0;
+        LoxEvents.PhaseEvent event = LoxEvents.beginPhase();
+        register();
+        if (LoxSampler.ENABLED) {
+            calls.begin();
+        }
         try {
-            for (Stmt statement : statements) {
-                execute(statement);
+            if (LoxMachine.ENABLED) {
+                machine.execute(statements);
+            } else {
+                for (Stmt statement : statements) {
+                    execute(statement);
+                }
             }
         } catch (RuntimeError error) {
-            Lox.runtimeError(error);
+            // Keep the output that came before the error ahead of its message
+            out.flush();
+            reporter.runtimeError(error);
+        } finally {
+            out.flush();
+            counters.publish();
+            if (LoxSampler.ENABLED) {
+                calls.end();
+            }
+            LoxEvents.endPhase(event, LoxProfiler.Phase.INTERPRET);
+            if (LoxProfiler.ENABLED) {
+                LoxProfiler.phase(LoxProfiler.Phase.INTERPRET, start);
+            }
+        }
+    }
+
+    private void register() {
+        if (!registered && LoxEvents.active()) {
+            LoxEvents.register(globals);
+            registered = true;
+        }
+    }
+
+    // Push buffered script output to the underlying stream, and the counts
+    // of this interpreter to LoxRuntime
+    void flush() {
+        out.flush();
+        counters.publish();
+    }
+
+    // Where a heap walk (see LoxHeap) starts: the scope being executed, which
+    // leads out to the globals. Callers' locals are not reachable from it.
+    Environment scope() {
+        return environment;
+    }
+
+    // Read and define globals by name, for drivers like LoxPipeline
+    Object global(String name) {
+        Object value = globals.get(new Token(TokenType.IDENTIFIER, name, null, 0));
+        return value instanceof LoxString ? ((LoxString) value).flatten() : value;
+    }
+
+    void defineGlobal(String name, Object value) {
+        globals.define(name, value);
+    }
+
+    // Execute the statements for an embedder, letting runtime errors propagate.
+    // Returns the value of a trailing expression statement, or nil.
+    Object evaluateProgram(List<Stmt> statements) {
+        register();
+        int last = statements.size() - 1;
+        if (last < 0) {
+            return null;
+        }
+
+        if (LoxMachine.ENABLED) {
+            machine.execute(statements.subList(0, last));
+        } else {
+            for (int i = 0; i < last; i++) {
+                execute(statements.get(i));
+            }
+        }
+
+        return lastValue(statements.get(last));
+    }
+
+    // The value of a trailing expression statement, through any probes around it
+    private Object lastValue(Stmt statement) {
+        if (statement instanceof Stmt.Probe) {
+            Stmt.Probe probe = (Stmt.Probe) statement;
+            return probe(probe.probe, () -> lastValue(probe.statement));
         }
+        if (statement instanceof Stmt.Expression) {
+            return evaluate(((Stmt.Expression) statement).expression);
+        }
+
+        execute(statement);
+        return null;
     }
 
     @Override
     public Object visitSuperExpr(Expr.Super expr) {
-        int distance = locals.get(expr);
+        int distance = expr.depth;
         LoxClass superclass = (LoxClass) environment.getAt(distance, "super");
 
         LoxInstance object = (LoxInstance) environment.getAt(distance - 1, "this");
 
-        LoxFunction method = superclass.findMethod(expr.method.lexeme);
+        LoxFunction method = superclass.findMethod(expr.method.lexeme, counters);
 
         if (method == null) {
             throw new RuntimeError(expr.method,"Undefined property '" + expr.method.lexeme + "'.");
         }
         
+        counters.environments++;
         return method.bind(object);
     }
 
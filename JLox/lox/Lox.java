@@ -2,13 +2,16 @@ package JLox.lox;
 
 import java.io.IOException;
 import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.List;
+import java.util.Arrays;
 
 public class Lox {
 
@@ -21,37 +24,155 @@ public class Lox {
     private static final String ANSI_YELLOW = "\u001B[33m";
     private static final String ANSI_GREEN = "\u001B[32m";
 
-    // Static variables to track errors and runtime errors.
-    // These are used to indicate if the program should exit with an error code.
-    public static boolean hadError = false;
-    public static boolean hadRuntimeError = false;
+    // Engine shared by every run in this JVM
+    private static final LoxEngine engine = new LoxEngine();
 
-    private static final Interpreter interpreter = new Interpreter();
+    // Context used by the command line and the REPL.
+    // The server creates a fresh context for every request instead.
+    private static LoxContext context;
+
+    // Sink for the script output of the command line and the REPL
+    private static LoxOutput output;
 
     public static void main(String[] args) throws IOException {
         System.setOut(new PrintStream(System.out, true, StandardCharsets.UTF_8));
-        if (args.length > 1) {
-            System.out.println("Usage: jlox [path/to/script]");
-            System.exit(64);
+        // Both must be set before the first script is compiled, see LoxProfiler and LoxSampler
+        boolean heapReport = false;
+        while (args.length >= 1 && (args[0].equals("--profile") || args[0].equals("--sample")
+                || args[0].equals("--heap-report"))) {
+            if (args[0].equals("--profile")) {
+                System.setProperty("jlox.profile", "true");
+                args = Arrays.copyOfRange(args, 1, args.length);
+            } else if (args[0].equals("--heap-report")) {
+                heapReport = true;
+                args = Arrays.copyOfRange(args, 1, args.length);
+            } else if (args.length >= 2) {
+                System.setProperty("jlox.sample", args[1]);
+                args = Arrays.copyOfRange(args, 2, args.length);
+            } else {
+                usage();
+            }
+        }
+        if (LoxProfiler.ENABLED) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> LoxProfiler.report(System.err)));
+        }
+        if (LoxSampler.ENABLED) {
+            LoxSampler.start();
+        }
+
+        if (args.length >= 1 && args[0].equals("--server")) {
+            // Resident mode: keep one warm JVM and serve scripts over a socket
+            Path socket = args.length > 1 ? Paths.get(args[1]) : LoxServer.defaultSocket();
+            LoxRuntime.register();
+            System.exit(new LoxServer(engine, socket).serve());
+        }
+
+        if (args.length >= 2 && args[0].equals("--client")) {
+            // Forward the script to a running server and mirror its exit code
+            String[] scriptArgs = Arrays.copyOfRange(args, 2, args.length);
+            System.exit(LoxClient.run(LoxServer.defaultSocket(), args[1], scriptArgs));
+        }
+
+        if (args.length >= 2 && args[0].equals("--batch")) {
+            // Run a whole directory of scripts on a shared, warm JVM
+            int parallelism = Runtime.getRuntime().availableProcessors();
+            if (args.length == 4 && args[2].equals("--parallelism")) {
+                try {
+                    parallelism = Integer.parseInt(args[3]);
+                } catch (NumberFormatException e) {
+                    usage();
+                }
+                if (parallelism < 1 || parallelism > LoxBatch.MAX_PARALLELISM) {
+                    usage();
+                }
+            } else if (args.length != 2) {
+                usage();
+            }
+            LoxRuntime.registerLater();
+            System.exit(new LoxBatch(engine, parallelism).run(args[1]));
+        }
+
+        if (args.length >= 2 && args[0].equals("--bench")) {
+            // Time scripts run after run in this JVM, optionally against a saved baseline
+            int warmup = 5;
+            int runs = 20;
+            Path baseline = null;
+            Path save = null;
+            if (args.length % 2 != 0) {
+                usage();
+            }
+            for (int i = 2; i < args.length; i += 2) {
+                if (args[i].equals("--warmup")) {
+                    warmup = Integer.parseInt(args[i + 1]);
+                } else if (args[i].equals("--runs")) {
+                    runs = Integer.parseInt(args[i + 1]);
+                } else if (args[i].equals("--baseline")) {
+                    baseline = Paths.get(args[i + 1]);
+                } else if (args[i].equals("--save")) {
+                    save = Paths.get(args[i + 1]);
+                } else {
+                    usage();
+                }
+            }
+            if (warmup < 0 || runs < 1) {
+                usage();
+            }
+            System.exit(new LoxBench(engine, warmup, runs).run(args[1], baseline, save));
+        }
+
+        // Everything from here on may run for a long time, see LoxRuntime
+        LoxRuntime.registerLater();
+
+        if (args.length == 2 && args[0].equals("-n")) {
+            // awk-style filter: run the script's onLine() for every line of stdin
+            System.exit(new LoxPipeline(engine).run(Paths.get(args[1])));
+        }
+
+        // Script output bypasses System.out: block-buffered into a file or pipe,
+        // line-buffered on a terminal and in the REPL, unless -Djlox.output says otherwise
+        boolean interactive = args.length == 0 || System.console() != null;
+        output = LoxOutput.create(new FileOutputStream(FileDescriptor.out),
+                LoxOutput.mode(interactive ? LoxOutput.Mode.LINE : LoxOutput.Mode.BLOCK));
+        context = engine.newContext(output, System.err);
+        if (heapReport) {
+            // What the globals still hold once the script is done
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> context.reportHeap(System.err)));
+        }
+
+        if (args.length > 1 || (args.length == 1 && args[0].startsWith("-"))) {
+            usage();
         } else if (args.length == 1) {
             runFile(args[0]);
         } else {
             // Start REPL mode
             runPrompt();
-            hadError = false;
+            context.resetErrors();
+            output.close();
         }
     }
 
+    private static void usage() {
+        System.out.println("Usage: jlox [--profile] [--sample out.folded] [--heap-report] [path/to/script]");
+        System.out.println("       jlox --server [path/to/socket]");
+        System.out.println("       jlox --client path/to/script [args...]");
+        System.out.println("       jlox --batch <dir|glob> [--parallelism N]");
+        System.out.println("       jlox --bench <dir|glob> [--warmup N] [--runs N] [--baseline file] [--save file]");
+        System.out.println("       jlox -n path/to/script < input");
+        System.exit(64);
+    }
+
     // Parse and execute the given file
     private static void runFile(String path) throws IOException {
         byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
-        // Indicate an error in the exit code
-        if (hadError) {
-            System.exit(65);
+        int exitCode;
+        try {
+            exitCode = context.run(new String(bytes, Charset.defaultCharset()));
+        } finally {
+            output.close();
         }
-        if (hadRuntimeError) {
-            System.exit(70);
+        // Indicate an error in the exit code
+        if (exitCode != 0) {
+            System.exit(exitCode);
         }
     }
 
@@ -166,15 +287,15 @@ public class Lox {
                 }
 
                 if (source.length() > 0) {
-                    run(source.toString());
-                    hadError = false;
+                    context.run(source.toString());
+                    context.resetErrors();
                 }
 
                 multilineMode = false; // Reset to single-line mode
             } else {
                 // Single-line execution
-                run(line);
-                hadError = false;
+                context.run(line);
+                context.resetErrors();
             }
         }
     }
@@ -255,55 +376,4 @@ public class Lox {
         System.out.print("\033[2J\033[H");
         System.out.flush();
     }
-
-    // Gateway function of interpreter
-    private static void run(String source) {
-        Scanner scanner = new Scanner(source);
-        List<Token> tokens = scanner.scanTokens();
-        
-        Parser parser = new Parser(tokens);
-        List<Stmt> statements = parser.parse();
-
-        // If there was a parsing error, exit early
-        if (hadError) {
-            return;
-        }
-
-        Resolver resolver = new Resolver(interpreter);
-        resolver.resolve(statements);
-
-        // Stop if there was a resolution error.
-        if (hadError) {
-            return;
-        }
-        
-        // Call the interpreter to evalute expression
-        interpreter.interpret(statements);
-    }
-
-    // Handle error without token
-    public static void error(int line, String message) {
-        report(line, "", message);
-    }
-
-    // Report the error message to the user
-    public static void report(int line, String where, String message) {
-        System.err.println("[line " + line + "] Error" + where + ": " + message);
-        hadError = true;
-    }
-
-    static void runtimeError(RuntimeError error) {
-        System.err.println(error.getMessage() +
-                "\n[line " + error.token.line + "]");
-        hadRuntimeError = true;
-    }
-
-    // Handle error with token
-    public static void error(Token token, String message) {
-        if (token.type == TokenType.EOF) {
-            report(token.line, " at end", message);
-        } else {
-            report(token.line, " at '" + token.lexeme + "'", message);
-        }
-    }
 }
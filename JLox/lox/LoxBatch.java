@@ -0,0 +1,171 @@
+package JLox.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs a directory (or glob) of independent scripts in one JVM.
+ * Every script gets its own {@link LoxContext} on a work-stealing pool, and its
+ * output is buffered so the output of different scripts never interleaves.
+ * Results are replayed in path order, followed by a timing summary on stderr.
+ */
+class LoxBatch {
+
+    // Exit code for scripts that could not be read (see sysexits.h)
+    static final int EX_NOINPUT = 66;
+
+    // The most threads a ForkJoinPool takes
+    static final int MAX_PARALLELISM = 0x7fff;
+
+    private final LoxEngine engine;
+    private final int parallelism;
+
+    // Outcome of a single script
+    private record Result(Path path, int exitCode, long nanos, byte[] out, byte[] err) {
+    }
+
+    LoxBatch(LoxEngine engine, int parallelism) {
+        this.engine = engine;
+        this.parallelism = parallelism;
+    }
+
+    // Run every matching script and return the worst exit code
+    int run(String pattern) throws IOException {
+        List<Path> scripts = findScripts(pattern);
+        if (scripts.isEmpty()) {
+            System.err.println("No scripts match '" + pattern + "'.");
+            return EX_NOINPUT;
+        }
+
+        long start = System.nanoTime();
+        List<Result> results = new ArrayList<>(scripts.size());
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Future<Result>> futures = new ArrayList<>(scripts.size());
+            for (Path script : scripts) {
+                futures.add(pool.submit(() -> runScript(script)));
+            }
+
+            // Replay each script's output as soon as it and its predecessors are done
+            for (Future<Result> future : futures) {
+                Result result = future.get();
+                System.out.write(result.out);
+                System.out.flush();
+                System.err.write(result.err);
+                results.add(result);
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IOException("Batch run failed.", e);
+        } finally {
+            pool.shutdown();
+        }
+        long wall = System.nanoTime() - start;
+
+        return summarize(results, wall);
+    }
+
+    // Execute one script in a fresh context with buffered output
+    private Result runScript(Path path) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream outStream = new PrintStream(out, false, StandardCharsets.UTF_8);
+        PrintStream errStream = new PrintStream(err, false, StandardCharsets.UTF_8);
+
+        long start = System.nanoTime();
+        int exitCode;
+        try {
+            String source = new String(Files.readAllBytes(path), Charset.defaultCharset());
+            exitCode = engine.newContext(outStream, errStream).run(source);
+        } catch (IOException e) {
+            errStream.println("Could not read " + path + ": " + e.getMessage());
+            exitCode = EX_NOINPUT;
+        } catch (StackOverflowError e) {
+            // Do not take the other scripts of the batch down with this one
+            errStream.println("Stack overflow.");
+            exitCode = ErrorReporter.EX_SOFTWARE;
+        } catch (Throwable e) {
+            errStream.println("Internal error: " + e);
+            exitCode = ErrorReporter.EX_SOFTWARE;
+        }
+        long nanos = System.nanoTime() - start;
+
+        outStream.flush();
+        errStream.flush();
+        return new Result(path, exitCode, nanos, out.toByteArray(), err.toByteArray());
+    }
+
+    private int summarize(List<Result> results, long wall) {
+        int worst = 0;
+        int failed = 0;
+        long busy = 0;
+
+        System.err.println();
+        System.err.println("Batch summary (" + parallelism + " threads):");
+        for (Result result : results) {
+            System.err.printf("  %10.2f ms  exit %-3d %s%n", result.nanos / 1e6, result.exitCode, result.path);
+            busy += result.nanos;
+            worst = Math.max(worst, result.exitCode);
+            if (result.exitCode != 0) {
+                failed++;
+            }
+        }
+        System.err.printf("%d scripts, %d failed, %.2f ms wall, %.2f ms total script time%n",
+                results.size(), failed, wall / 1e6, busy / 1e6);
+
+        return worst;
+    }
+
+    // A directory means every .lox file below it, anything else is a glob
+    static List<Path> findScripts(String pattern) throws IOException {
+        Path path = Paths.get(pattern);
+        if (Files.isDirectory(path)) {
+            return walk(path, file -> file.toString().endsWith(".lox"));
+        }
+
+        if (Files.isRegularFile(path)) {
+            return List.of(path);
+        }
+
+        // Walk from the longest directory prefix that contains no glob characters
+        Path root = Paths.get("");
+        for (Path part : path) {
+            if (part.toString().matches(".*[*?\\[{].*")) {
+                break;
+            }
+            root = root.resolve(part);
+        }
+        if (path.isAbsolute()) {
+            root = path.getRoot().resolve(root);
+        }
+
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        if (!Files.isDirectory(root)) {
+            return List.of();
+        }
+        return walk(root, matcher::matches);
+    }
+
+    private static List<Path> walk(Path root, PathMatcher matcher) throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(matcher::matches)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package JLox.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Times scripts in one JVM, for jlox --bench.
+ * Every script is run a number of times to warm up the JIT, then measured
+ * run by run with System.nanoTime(). A run compiles and executes the script
+ * in a fresh context with its output thrown away.
+ *
+ * The report has the mean, median, 99th percentile and a 95% confidence
+ * interval of the mean per script. Results can be saved as a baseline, and a
+ * later run against that baseline flags every script whose mean got slower
+ * by more than 2% in a way that Welch's t-test calls significant at 95%.
+ */
+class LoxBench {
+
+    // Exit code when a script got significantly slower, like a failed test
+    static final int EX_REGRESSION = 1;
+
+    // Smaller differences are never flagged, however significant
+    private static final double MIN_CHANGE = 0.02;
+
+    // Two-sided 95% quantiles of Student's t for 1 to 30 degrees of freedom;
+    // beyond that the normal approximation is close enough
+    private static final double[] T_95 = { 12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262,
+            2.228, 2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086, 2.080, 2.074, 2.069,
+            2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042 };
+    private static final double Z_95 = 1.960;
+
+    private final LoxEngine engine;
+    private final int warmup;
+    private final int runs;
+
+    // Summary of the runs of one script, in nanoseconds
+    record Stats(int runs, double mean, double median, double p99, double deviation) {
+
+        static Stats of(long[] samples) {
+            long[] sorted = samples.clone();
+            Arrays.sort(sorted);
+            int n = sorted.length;
+
+            double mean = 0;
+            for (long sample : sorted) {
+                mean += sample;
+            }
+            mean /= n;
+
+            double squares = 0;
+            for (long sample : sorted) {
+                squares += (sample - mean) * (sample - mean);
+            }
+            double deviation = n > 1 ? Math.sqrt(squares / (n - 1)) : 0;
+
+            double median = n % 2 == 1 ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2.0;
+            // Nearest rank
+            double p99 = sorted[(int) Math.ceil(0.99 * n) - 1];
+            return new Stats(n, mean, median, p99, deviation);
+        }
+
+        // Half the width of the 95% confidence interval of the mean
+        double margin() {
+            return runs > 1 ? t95(runs - 1) * deviation / Math.sqrt(runs) : Double.NaN;
+        }
+
+        // Whether this mean differs from the other one beyond chance (Welch's t-test)
+        boolean differsFrom(Stats other) {
+            double a = deviation * deviation / runs;
+            double b = other.deviation * other.deviation / other.runs;
+            double error = Math.sqrt(a + b);
+            if (error == 0) {
+                return mean != other.mean;
+            }
+
+            // Welch-Satterthwaite degrees of freedom
+            double t = Math.abs(mean - other.mean) / error;
+            double denominator = (runs > 1 ? a * a / (runs - 1) : 0)
+                    + (other.runs > 1 ? b * b / (other.runs - 1) : 0);
+            double freedom = denominator > 0 ? (a + b) * (a + b) / denominator : 1;
+            return t > t95(freedom);
+        }
+    }
+
+    LoxBench(LoxEngine engine, int warmup, int runs) {
+        this.engine = engine;
+        this.warmup = warmup;
+        this.runs = runs;
+    }
+
+    // Measure every matching script, compare with and/or save a baseline.
+    // Returns 0, the exit code of a failing script or EX_REGRESSION.
+    int run(String pattern, Path baseline, Path save) throws IOException {
+        List<Path> scripts = LoxBatch.findScripts(pattern);
+        if (scripts.isEmpty()) {
+            System.err.println("No scripts match '" + pattern + "'.");
+            return LoxBatch.EX_NOINPUT;
+        }
+
+        Map<String, Stats> previous = baseline != null ? load(baseline) : Map.of();
+        Map<String, Stats> results = new HashMap<>();
+        int regressions = 0;
+
+        System.out.printf("%d warm-up and %d measured runs per script%n", warmup, runs);
+        System.out.printf("%-40s %12s %12s %12s %12s  %s%n", "script", "mean", "median", "p99", "95% CI", "baseline");
+        for (Path script : scripts) {
+            String source = new String(Files.readAllBytes(script), Charset.defaultCharset());
+            for (int i = 0; i < warmup; i++) {
+                int exitCode = runOnce(source, script);
+                if (exitCode != 0) {
+                    return exitCode;
+                }
+            }
+
+            long[] samples = new long[runs];
+            for (int i = 0; i < runs; i++) {
+                long start = System.nanoTime();
+                int exitCode = runOnce(source, script);
+                samples[i] = System.nanoTime() - start;
+                if (exitCode != 0) {
+                    return exitCode;
+                }
+            }
+
+            Stats stats = Stats.of(samples);
+            results.put(script.toString(), stats);
+
+            String comparison = "";
+            Stats before = previous.get(script.toString());
+            if (before != null) {
+                double change = stats.mean / before.mean - 1;
+                comparison = String.format("%+.1f%%", change * 100);
+                if (stats.differsFrom(before) && Math.abs(change) > MIN_CHANGE) {
+                    comparison += change > 0 ? " SLOWER" : " faster";
+                    if (change > 0) {
+                        regressions++;
+                    }
+                }
+            }
+
+            System.out.printf("%-40s %12s %12s %12s %12s  %s%n", script, millis(stats.mean),
+                    millis(stats.median), millis(stats.p99), "±" + millis(stats.margin()), comparison);
+        }
+
+        if (save != null) {
+            store(save, results);
+            System.out.println("Saved baseline to " + save);
+        }
+        if (regressions > 0) {
+            System.out.println(regressions + " script(s) got significantly slower.");
+            return EX_REGRESSION;
+        }
+        return 0;
+    }
+
+    // Compile and execute the script once, reporting its errors if it fails
+    private int runOnce(String source, Path script) {
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        LoxContext context = engine.newContext(new PrintStream(OutputStream.nullOutputStream()),
+                new PrintStream(errors, true, StandardCharsets.UTF_8));
+        int exitCode = context.run(source);
+        if (exitCode != 0) {
+            System.err.println(script + " failed:");
+            System.err.print(errors.toString(StandardCharsets.UTF_8));
+        }
+        return exitCode;
+    }
+
+    private static String millis(double nanos) {
+        return Double.isNaN(nanos) ? "-" : String.format("%.2f ms", nanos / 1e6);
+    }
+
+    private static double t95(double freedom) {
+        int index = (int) freedom;
+        if (index < 1) {
+            return T_95[0];
+        }
+        return index <= T_95.length ? T_95[index - 1] : Z_95;
+    }
+
+    // One line per script: path, runs, mean, median, p99 and standard deviation in ns
+    private static void store(Path file, Map<String, Stats> results) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("# jlox --bench baseline: script, runs, mean, median, p99, standard deviation (ns)");
+        results.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> {
+                    Stats stats = entry.getValue();
+                    lines.add(String.format("%s\t%d\t%.0f\t%.0f\t%.0f\t%.0f", entry.getKey(), stats.runs,
+                            stats.mean, stats.median, stats.p99, stats.deviation));
+                });
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, Stats> load(Path file) throws IOException {
+        Map<String, Stats> baseline = new HashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\t");
+            if (fields.length != 6) {
+                throw new IOException("Malformed baseline line: " + line);
+            }
+            try {
+                baseline.put(fields[0], new Stats(Integer.parseInt(fields[1]), Double.parseDouble(fields[2]),
+                        Double.parseDouble(fields[3]), Double.parseDouble(fields[4]),
+                        Double.parseDouble(fields[5])));
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed baseline line: " + line);
+            }
+        }
+        return baseline;
+    }
+}
@@ -0,0 +1,139 @@
+package JLox.lox;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.script.SimpleBindings;
+
+/**
+ * Bindings handed out by {@link LoxScriptEngine}.
+ * Lox only knows one number type, so Java numbers are stored as doubles when
+ * they are put in; everything else is stored as is.
+ *
+ * The bindings are the globals of every thread evaluating scripts against
+ * them, so they live in a concurrent map, which stores nil as
+ * {@link Environment#NIL}. Callers see null as usual.
+ */
+public class LoxBindings extends SimpleBindings {
+
+    private final Map<String, Object> values;
+
+    public LoxBindings() {
+        this(new ConcurrentHashMap<>());
+    }
+
+    private LoxBindings(Map<String, Object> values) {
+        super(values);
+        this.values = values;
+    }
+
+    @Override
+    public Object put(String name, Object value) {
+        return Environment.unmask(super.put(name, Environment.mask(toLox(value))));
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends Object> toMerge) {
+        for (Map.Entry<? extends String, ? extends Object> entry : toMerge.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public Object get(Object key) {
+        return Environment.unmask(super.get(key));
+    }
+
+    @Override
+    public Object remove(Object key) {
+        return Environment.unmask(super.remove(key));
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return super.containsValue(Environment.mask(value));
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                Iterator<Map.Entry<String, Object>> entries = values.entrySet().iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<String, Object> next() {
+                        Map.Entry<String, Object> entry = entries.next();
+                        return new AbstractMap.SimpleEntry<>(entry.getKey(), Environment.unmask(entry.getValue())) {
+                            @Override
+                            public Object setValue(Object value) {
+                                super.setValue(value);
+                                return Environment.unmask(entry.setValue(Environment.mask(toLox(value))));
+                            }
+                        };
+                    }
+
+                    @Override
+                    public void remove() {
+                        entries.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return values.size();
+            }
+        };
+    }
+
+    @Override
+    public Collection<Object> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Object> iterator() {
+                Iterator<Object> elements = values.values().iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return elements.hasNext();
+                    }
+
+                    @Override
+                    public Object next() {
+                        return Environment.unmask(elements.next());
+                    }
+
+                    @Override
+                    public void remove() {
+                        elements.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return values.size();
+            }
+        };
+    }
+
+    // Convert a Java value into its Lox representation
+    static Object toLox(Object value) {
+        if (value instanceof Number && !(value instanceof Double)) {
+            return ((Number) value).doubleValue();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,63 @@
+package JLox.lox;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+
+/**
+ * A bounded FIFO channel between Lox tasks, created by channel(capacity).
+ * send() blocks while the channel is full and receive() while it is empty.
+ * A capacity of 0 makes every send wait for a matching receive.
+ * Small channels keep their slots in an array allocated up front, larger ones
+ * allocate a node per value in flight, so a huge capacity costs nothing until
+ * it is used.
+ * Blocking parks only the virtual thread of the task, not a carrier thread.
+ */
+class LoxChannel {
+
+    // Largest capacity whose slots are allocated up front
+    private static final int ARRAY_CAPACITY = 1 << 16;
+
+    private final BlockingQueue<Object> queue;
+
+    LoxChannel(int capacity) {
+        if (capacity == 0) {
+            queue = new SynchronousQueue<>();
+        } else if (capacity <= ARRAY_CAPACITY) {
+            queue = new ArrayBlockingQueue<>(capacity);
+        } else {
+            queue = new LinkedBlockingQueue<>(capacity);
+        }
+    }
+
+    void send(Object value) {
+        // Everything sent happens-before the matching receive
+        Environment.publish(value);
+        try {
+            queue.put(Environment.mask(value));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeError("Interrupted while sending on a channel.");
+        }
+    }
+
+    // The values waiting to be received, nil masked as NIL
+    Object[] contents() {
+        return queue.toArray();
+    }
+
+    Object receive() {
+        try {
+            return Environment.unmask(queue.take());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeError("Interrupted while receiving from a channel.");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<channel>";
+    }
+}
@@ -1,26 +1,72 @@
 package JLox.lox;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class LoxClass implements LoxCallable {
     final String name;
     final LoxClass superclass;
     private final Map<String, LoxFunction> methods;
+    private final LoxFunction initializer;
+
+    // Methods found so far, inherited ones included. Methods never change
+    // once the class exists, so entries stay valid.
+    private final Map<String, LoxFunction> resolved = new ConcurrentHashMap<>();
+
+    // Whether the scopes the methods close over are shared, see share()
+    private boolean shared;
 
     LoxClass(String name, LoxClass superclass, Map<String, LoxFunction> methods) {
         this.superclass = superclass;
         this.name = name;
         this.methods = methods;
+        this.initializer = lookUpMethod("init");
+    }
+
+    LoxFunction initializer() {
+        return initializer;
+    }
+
+    // The methods declared by this class itself
+    Collection<LoxFunction> methods() {
+        return methods.values();
+    }
+
+    // Share the scopes every method closes over, inherited ones included, once
+    // the class or one of its instances may reach another thread
+    void share() {
+        for (LoxClass klass = this; klass != null && !klass.shared; klass = klass.superclass) {
+            klass.shared = true;
+            for (LoxFunction method : klass.methods.values()) {
+                method.share();
+            }
+        }
+    }
+
+    LoxFunction findMethod(String name, LoxRuntime.Counters counters) {
+        LoxFunction method = resolved.get(name);
+        if (method != null) {
+            counters.cacheHits++;
+            return method;
+        }
+
+        counters.cacheMisses++;
+        method = lookUpMethod(name);
+        if (method != null) {
+            resolved.put(name, method);
+        }
+        return method;
     }
 
-    LoxFunction findMethod(String name) {
+    private LoxFunction lookUpMethod(String name) {
         if (methods.containsKey(name)) {
             return methods.get(name);
         }
 
         if (superclass != null) {
-            return superclass.findMethod(name);
+            return superclass.lookUpMethod(name);
         }
         
         return null;
@@ -33,7 +79,6 @@ public class LoxClass implements LoxCallable {
 
     @Override
     public int arity() {
-        LoxFunction initializer = findMethod("init");
         if (initializer == null)
             return 0;
         return initializer.arity();
@@ -42,8 +87,9 @@ public class LoxClass implements LoxCallable {
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
         LoxInstance instance = new LoxInstance(this);
-        LoxFunction initializer = findMethod("init");
+        interpreter.counters.instances++;
         if (initializer != null) {
+            interpreter.counters.environments++;
             initializer.bind(instance).call(interpreter, arguments);
         }
         return instance;
@@ -0,0 +1,71 @@
+package JLox.lox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Thin front end of {@link LoxServer}: it ships a script to the running
+ * server and replays the script's stdout, stderr and exit code locally.
+ */
+class LoxClient {
+
+    // Exit code when no server is listening (see sysexits.h)
+    private static final int EX_UNAVAILABLE = 69;
+
+    static int run(Path socket, String path, String[] args) throws IOException {
+        byte[] source = Files.readAllBytes(Paths.get(path));
+
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+        } catch (IOException e) {
+            System.err.println("No jlox server listening on " + socket + ".");
+            return EX_UNAVAILABLE;
+        }
+
+        try (channel) {
+            DataOutputStream request = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel)));
+            request.writeInt(args.length);
+            for (String arg : args) {
+                LoxServer.writeBytes(request, arg.getBytes(StandardCharsets.UTF_8));
+            }
+            LoxServer.writeBytes(request, source);
+            request.flush();
+
+            DataInputStream response = new DataInputStream(
+                    new BufferedInputStream(Channels.newInputStream(channel)));
+            while (true) {
+                byte tag = response.readByte();
+                if (tag == LoxServer.EXIT) {
+                    int exitCode = response.readInt();
+                    System.out.flush();
+                    System.err.flush();
+                    return exitCode;
+                }
+
+                // Output frames are as long as the script's writes
+                byte[] bytes = LoxServer.readBytes(response, Integer.MAX_VALUE);
+                if (tag == LoxServer.STDOUT) {
+                    System.out.write(bytes);
+                } else {
+                    System.err.write(bytes);
+                }
+            }
+        } catch (EOFException e) {
+            System.err.println("Connection to jlox server lost.");
+            return ErrorReporter.EX_SOFTWARE;
+        }
+    }
+}
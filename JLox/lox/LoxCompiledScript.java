@@ -0,0 +1,32 @@
+package JLox.lox;
+
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+/**
+ * A Lox script that has already been scanned, parsed and resolved.
+ * Each {@link #eval} only executes the program, against the bindings of the
+ * given context, so one compiled script can be evaluated many times, also
+ * from several threads, with different bindings.
+ */
+public class LoxCompiledScript extends CompiledScript {
+    private final LoxScriptEngine engine;
+    private final LoxProgram program;
+
+    LoxCompiledScript(LoxScriptEngine engine, LoxProgram program) {
+        this.engine = engine;
+        this.program = program;
+    }
+
+    @Override
+    public Object eval(ScriptContext context) throws ScriptException {
+        return engine.evaluate(program, context);
+    }
+
+    @Override
+    public ScriptEngine getEngine() {
+        return engine;
+    }
+}
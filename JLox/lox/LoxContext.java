@@ -0,0 +1,55 @@
+package JLox.lox;
+
+import java.io.PrintStream;
+
+/**
+ * One isolated Lox runtime: an interpreter with its own globals, error
+ * reporter and output. Create contexts through {@link LoxEngine}.
+ * Nothing is shared between contexts except the immutable programs they run.
+ */
+public final class LoxContext {
+    private final LoxEngine engine;
+    private final ErrorReporter reporter;
+    private final Interpreter interpreter;
+
+    LoxContext(LoxEngine engine, LoxOutput out, PrintStream err) {
+        this.engine = engine;
+        this.reporter = new ErrorReporter(err);
+        this.interpreter = new Interpreter(out, reporter);
+    }
+
+    // Compile the source, reporting errors to this context
+    public LoxProgram compile(String source) {
+        return engine.compile(source, reporter);
+    }
+
+    // Execute an already compiled program against this context's globals
+    public void execute(LoxProgram program) {
+        interpreter.interpret(program.statements);
+    }
+
+    // Compile and execute the source, returning the exit code so far
+    public int run(String source) {
+        LoxProgram program = compile(source);
+        if (program != null) {
+            execute(program);
+        }
+        return exitCode();
+    }
+
+    // Print a histogram of the values reachable from the globals (jlox --heap-report)
+    void reportHeap(PrintStream out) {
+        LoxHeap.walk(interpreter.scope()).report(out);
+    }
+
+    // 0 on success, 65 after a compile error and 70 after a runtime error
+    public int exitCode() {
+        return reporter.exitCode();
+    }
+
+    // Forget earlier errors, so the next run starts with a clean slate (REPL)
+    public void resetErrors() {
+        reporter.hadError = false;
+        reporter.hadRuntimeError = false;
+    }
+}
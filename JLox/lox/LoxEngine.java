@@ -0,0 +1,101 @@
+package JLox.lox;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entry point for embedding JLox in a Java application.
+ * The engine holds no mutable state: it compiles sources into immutable
+ * {@link LoxProgram}s and creates independent {@link LoxContext}s, each with
+ * its own interpreter, globals, error reporter and output streams.
+ * A single context must not be used by two threads at once, but any number of
+ * contexts can run side by side in the same JVM.
+ *
+ * Tools are attached with {@link #attach}, which returns a new engine whose
+ * programs carry probes for the tools; programs of an engine without tools
+ * are not instrumented at all.
+ */
+public final class LoxEngine {
+
+    private final List<Instrumenter.Attachment> tools;
+
+    public LoxEngine() {
+        this(List.of());
+    }
+
+    private LoxEngine(List<Instrumenter.Attachment> tools) {
+        this.tools = tools;
+    }
+
+    // An engine whose programs call the tool around every node the filter
+    // matches, in addition to the tools of this one
+    public LoxEngine attach(LoxProbeFilter filter, LoxTool tool) {
+        List<Instrumenter.Attachment> tools = new ArrayList<>(this.tools);
+        tools.add(new Instrumenter.Attachment(filter, tool));
+        return new LoxEngine(List.copyOf(tools));
+    }
+
+    public LoxContext newContext() {
+        return newContext(System.out, System.err);
+    }
+
+    public LoxContext newContext(PrintStream out, PrintStream err) {
+        return newContext(LoxOutput.of(out), err);
+    }
+
+    // Print through a sink of its own, e.g. LoxOutput.create(stream, Mode.ASYNC)
+    public LoxContext newContext(LoxOutput out, PrintStream err) {
+        return new LoxContext(this, out, err);
+    }
+
+    // Publish the counters of every interpreter in this JVM as the MXBean
+    // JLox:type=Runtime (see LoxRuntimeMXBean)
+    public static void registerRuntimeMXBean() {
+        LoxRuntime.register();
+    }
+
+    // Compile the source into a program, or return null after reporting errors
+    public LoxProgram compile(String source, ErrorReporter reporter) {
+        long start = LoxProfiler.ENABLED ? System.nanoTime() : 0;
+        LoxEvents.PhaseEvent event = LoxEvents.beginPhase();
+        Scanner scanner = new Scanner(source, reporter);
+        List<Token> tokens = scanner.scanTokens();
+        LoxEvents.endPhase(event, LoxProfiler.Phase.SCAN);
+        if (LoxProfiler.ENABLED) {
+            start = LoxProfiler.phase(LoxProfiler.Phase.SCAN, start);
+        }
+
+        event = LoxEvents.beginPhase();
+        Parser parser = new Parser(tokens, reporter);
+        List<Stmt> statements = parser.parse();
+        LoxEvents.endPhase(event, LoxProfiler.Phase.PARSE);
+        if (LoxProfiler.ENABLED) {
+            start = LoxProfiler.phase(LoxProfiler.Phase.PARSE, start);
+        }
+
+        // If there was a parsing error, exit early
+        if (reporter.hadError) {
+            return null;
+        }
+
+        if (!tools.isEmpty()) {
+            statements = new Instrumenter(tools).instrument(statements);
+        }
+
+        event = LoxEvents.beginPhase();
+        Resolver resolver = new Resolver(reporter);
+        resolver.resolve(statements);
+        LoxEvents.endPhase(event, LoxProfiler.Phase.RESOLVE);
+        if (LoxProfiler.ENABLED) {
+            LoxProfiler.phase(LoxProfiler.Phase.RESOLVE, start);
+        }
+
+        // Stop if there was a resolution error.
+        if (reporter.hadError) {
+            return null;
+        }
+
+        return new LoxProgram(statements);
+    }
+}
@@ -0,0 +1,224 @@
+package JLox.lox;
+
+import java.lang.ref.Cleaner;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JDK Flight Recorder events for Lox activity, so it shows up on the same
+ * timeline as GC and safepoints. Every event can be switched on and off and
+ * tuned in a .jfc file, see JLox/jlox.jfc. Function calls and instantiations
+ * are off by default, since a script can make millions of them.
+ *
+ * Nothing here touches an event class until the recorder is running, whether
+ * it was started with -XX:StartFlightRecording or later through jcmd: the
+ * first event of a JVM registers the event classes with JFR, which costs a
+ * third of a second. After that a disabled event costs nothing, because its
+ * shouldCommit() is false and the JIT removes the event object altogether.
+ */
+final class LoxEvents {
+
+    @Name("jlox.Call")
+    @Label("Lox Function Call")
+    @Category("Lox")
+    @Description("A call of a Lox function or method that took longer than the threshold")
+    @Enabled(false)
+    @Threshold("10 ms")
+    static final class CallEvent extends Event {
+        @Label("Function")
+        String function;
+
+        @Label("Declared on Line")
+        int line;
+    }
+
+    @Name("jlox.Instantiation")
+    @Label("Lox Instantiation")
+    @Category("Lox")
+    @Description("An instance of a Lox class was created")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class InstantiationEvent extends Event {
+        @Label("Class")
+        String className;
+    }
+
+    @Name("jlox.RuntimeError")
+    @Label("Lox Runtime Error")
+    @Category("Lox")
+    static final class ErrorEvent extends Event {
+        @Label("Message")
+        String message;
+
+        @Label("Line")
+        int line;
+    }
+
+    @Name("jlox.Phase")
+    @Label("Lox Phase")
+    @Category("Lox")
+    @Description("Scanning, parsing, resolving or interpreting a script")
+    @StackTrace(false)
+    static final class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+    }
+
+    @Name("jlox.Globals")
+    @Label("Lox Globals")
+    @Category("Lox")
+    @Description("Number of variables in the global environment of a context")
+    @Period("1 s")
+    @StackTrace(false)
+    static final class GlobalsEvent extends Event {
+        @Label("Variables")
+        int variables;
+    }
+
+    @Name("jlox.Instances")
+    @Label("Lox Instances")
+    @Category("Lox")
+    @Description("Lox instances created since the event was enabled that are still alive")
+    @Period("1 s")
+    @StackTrace(false)
+    static final class InstancesEvent extends Event {
+        @Label("Live Instances")
+        long instances;
+    }
+
+    // Global environments of the live contexts that ran during a recording
+    private static final Set<Environment> globals = Collections.newSetFromMap(new WeakHashMap<>());
+
+    // Live instances are only tracked while jlox.Instances is enabled in a recording,
+    // since every tracked instance costs a Cleaner registration
+    private static volatile boolean trackInstances;
+    private static final LongAdder liveInstances = new LongAdder();
+
+    // Its thread is only started once the first instance is tracked
+    private static final class Tracker {
+        static final Cleaner cleaner = Cleaner.create();
+    }
+
+    private static volatile boolean hooked;
+
+    private LoxEvents() {
+    }
+
+    // Whether the recorder is running, so events may be created
+    static boolean active() {
+        if (!FlightRecorder.isInitialized()) {
+            return false;
+        }
+        if (!hooked) {
+            hook();
+        }
+        return true;
+    }
+
+    private static synchronized void hook() {
+        if (hooked) {
+            return;
+        }
+        FlightRecorder.addPeriodicEvent(GlobalsEvent.class, LoxEvents::emitGlobals);
+        FlightRecorder.addPeriodicEvent(InstancesEvent.class, LoxEvents::emitInstances);
+        FlightRecorder.addListener(new FlightRecorderListener() {
+            @Override
+            public void recordingStateChanged(Recording recording) {
+                trackInstances = EventType.getEventType(InstancesEvent.class).isEnabled();
+            }
+        });
+        trackInstances = EventType.getEventType(InstancesEvent.class).isEnabled();
+        hooked = true;
+    }
+
+    static void register(Environment environment) {
+        synchronized (globals) {
+            globals.add(environment);
+        }
+    }
+
+    // Called by every new LoxInstance
+    static void instanceCreated(LoxInstance instance, LoxClass klass) {
+        if (!active()) {
+            return;
+        }
+        InstantiationEvent event = new InstantiationEvent();
+        if (event.shouldCommit()) {
+            event.className = klass.name;
+            event.commit();
+        }
+        if (trackInstances) {
+            liveInstances.increment();
+            Tracker.cleaner.register(instance, liveInstances::decrement);
+        }
+    }
+
+    // Null while the recorder is not running
+    static PhaseEvent beginPhase() {
+        if (!active()) {
+            return null;
+        }
+        PhaseEvent event = new PhaseEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endPhase(PhaseEvent event, LoxProfiler.Phase phase) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = phase.name().toLowerCase();
+            event.commit();
+        }
+    }
+
+    static void runtimeError(RuntimeError error) {
+        if (!active()) {
+            return;
+        }
+        ErrorEvent event = new ErrorEvent();
+        if (event.shouldCommit()) {
+            event.message = error.getMessage();
+            event.line = error.token.line;
+            event.commit();
+        }
+    }
+
+    private static void emitGlobals() {
+        List<Environment> environments;
+        synchronized (globals) {
+            environments = new ArrayList<>(globals);
+        }
+        for (Environment environment : environments) {
+            GlobalsEvent event = new GlobalsEvent();
+            event.variables = environment.size();
+            event.commit();
+        }
+    }
+
+    private static void emitInstances() {
+        InstancesEvent event = new InstancesEvent();
+        event.instances = liveInstances.sum();
+        event.commit();
+    }
+}
@@ -0,0 +1,179 @@
+package JLox.lox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A fixed-size array of numbers outside the Java heap, created by
+ * Float64Buffer(length) or mapFile(path, mode).
+ * The numbers live in direct or memory-mapped byte buffers as little-endian
+ * IEEE 754 doubles, so a mapped file of any size costs the garbage collector
+ * nothing but a few buffer objects, and sum/min/max/dot run over the raw
+ * memory without boxing a single element.
+ *
+ * A slice is a view that shares the memory of the buffer it was cut from.
+ * Like lists, buffers are not synchronized.
+ */
+class LoxFloat64Buffer {
+
+    // Byte buffers are indexed by int, so bigger buffers are split into
+    // chunks of 2^27 doubles (1 GB)
+    private static final int CHUNK_SHIFT = 27;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // The most chunks an array can hold, far more than any machine's memory
+    static final long MAX_LENGTH = (long) Integer.MAX_VALUE << CHUNK_SHIFT;
+
+    private final DoubleBuffer[] chunks;
+    private final long offset;
+    private final long length;
+    private final boolean readOnly;
+
+    private LoxFloat64Buffer(DoubleBuffer[] chunks, long offset, long length, boolean readOnly) {
+        this.chunks = chunks;
+        this.offset = offset;
+        this.length = length;
+        this.readOnly = readOnly;
+    }
+
+    // A zero-filled buffer in direct memory, of at most MAX_LENGTH numbers
+    static LoxFloat64Buffer allocate(long length) {
+        DoubleBuffer[] chunks = new DoubleBuffer[chunkCount(length)];
+        for (int i = 0; i < chunks.length; i++) {
+            long size = Math.min(CHUNK_SIZE, length - ((long) i << CHUNK_SHIFT));
+            chunks[i] = ByteBuffer.allocateDirect((int) size * Double.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asDoubleBuffer();
+        }
+        return new LoxFloat64Buffer(chunks, 0, length, false);
+    }
+
+    // Map a file of doubles; trailing bytes that don't make a whole double are ignored.
+    // Writes to a writable mapping go straight to the file.
+    static LoxFloat64Buffer map(Path path, boolean writable) throws IOException {
+        FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        StandardOpenOption[] options = writable
+                ? new StandardOpenOption[] { StandardOpenOption.READ, StandardOpenOption.WRITE }
+                : new StandardOpenOption[] { StandardOpenOption.READ };
+
+        // The mappings stay valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(path, options)) {
+            long length = channel.size() / Double.BYTES;
+            DoubleBuffer[] chunks = new DoubleBuffer[chunkCount(length)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = (long) i << CHUNK_SHIFT;
+                long size = Math.min(CHUNK_SIZE, length - start);
+                chunks[i] = channel.map(mode, start * Double.BYTES, size * Double.BYTES)
+                        .order(ByteOrder.LITTLE_ENDIAN)
+                        .asDoubleBuffer();
+            }
+            return new LoxFloat64Buffer(chunks, 0, length, !writable);
+        }
+    }
+
+    private static int chunkCount(long length) {
+        return (int) ((length + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+    }
+
+    long length() {
+        return length;
+    }
+
+    boolean isReadOnly() {
+        return readOnly;
+    }
+
+    // Callers check the index, see Interpreter.bufferIndex()
+    double get(long index) {
+        long position = offset + index;
+        return chunks[(int) (position >>> CHUNK_SHIFT)].get((int) (position & CHUNK_MASK));
+    }
+
+    void set(long index, double value) {
+        long position = offset + index;
+        chunks[(int) (position >>> CHUNK_SHIFT)].put((int) (position & CHUNK_MASK), value);
+    }
+
+    // A view of the elements from (inclusive) to (exclusive)
+    LoxFloat64Buffer slice(long from, long to) {
+        return new LoxFloat64Buffer(chunks, offset + from, to - from, readOnly);
+    }
+
+    double sum() {
+        double sum = 0;
+        for (long i = 0; i < length; ) {
+            DoubleBuffer chunk = chunkAt(i);
+            int start = startAt(i);
+            int end = endAt(i);
+            for (int j = start; j < end; j++) {
+                sum += chunk.get(j);
+            }
+            i += end - start;
+        }
+        return sum;
+    }
+
+    // Only called on non-empty buffers
+    double min() {
+        double min = Double.POSITIVE_INFINITY;
+        for (long i = 0; i < length; ) {
+            DoubleBuffer chunk = chunkAt(i);
+            int start = startAt(i);
+            int end = endAt(i);
+            for (int j = start; j < end; j++) {
+                min = Math.min(min, chunk.get(j));
+            }
+            i += end - start;
+        }
+        return min;
+    }
+
+    // Only called on non-empty buffers
+    double max() {
+        double max = Double.NEGATIVE_INFINITY;
+        for (long i = 0; i < length; ) {
+            DoubleBuffer chunk = chunkAt(i);
+            int start = startAt(i);
+            int end = endAt(i);
+            for (int j = start; j < end; j++) {
+                max = Math.max(max, chunk.get(j));
+            }
+            i += end - start;
+        }
+        return max;
+    }
+
+    // Only called with a buffer of the same length
+    double dot(LoxFloat64Buffer other) {
+        double dot = 0;
+        for (long i = 0; i < length; i++) {
+            dot += get(i) * other.get(i);
+        }
+        return dot;
+    }
+
+    // The chunk holding element i, and the part of it that belongs to this
+    // buffer from element i on
+    private DoubleBuffer chunkAt(long i) {
+        return chunks[(int) ((offset + i) >>> CHUNK_SHIFT)];
+    }
+
+    private int startAt(long i) {
+        return (int) ((offset + i) & CHUNK_MASK);
+    }
+
+    private int endAt(long i) {
+        return (int) Math.min(CHUNK_SIZE, startAt(i) + (length - i));
+    }
+
+    @Override
+    public String toString() {
+        return "<float64 buffer " + length + ">";
+    }
+}
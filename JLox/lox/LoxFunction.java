@@ -7,16 +7,46 @@ public class LoxFunction implements LoxCallable {
     private final Environment closure;
     private final boolean isInitializer;
 
+    // Name of the class that declares this method, null for functions
+    private final String className;
+
     LoxFunction(Stmt.Function declaration, Environment closure, boolean isInitializer) {
+        this(declaration, closure, isInitializer, null);
+    }
+
+    LoxFunction(Stmt.Function declaration, Environment closure, boolean isInitializer, String className) {
         this.isInitializer = isInitializer;
         this.declaration = declaration;
         this.closure = closure;
+        this.className = className;
     }
 
     public LoxFunction bind(LoxInstance instance) {
         Environment environment = new Environment(closure);
         environment.define("this", instance);
-        return new LoxFunction(declaration, environment, isInitializer);
+        return new LoxFunction(declaration, environment, isInitializer, className);
+    }
+
+    Stmt.Function declaration() {
+        return declaration;
+    }
+
+    Environment closure() {
+        return closure;
+    }
+
+    boolean isInitializer() {
+        return isInitializer;
+    }
+
+    // Called before the function can run on another thread
+    void share() {
+        closure.share();
+    }
+
+    // The name in profiles: Class.method for methods
+    String qualifiedName() {
+        return className != null ? className + "." + declaration.name.lexeme : declaration.name.lexeme;
     }
 
     @Override
@@ -24,8 +54,71 @@ public class LoxFunction implements LoxCallable {
         return declaration.params.size();
     }
 
+    // What a function returns instead of making a call in tail position. The
+    // trampoline in call() makes the call once the function has returned, so
+    // tail recursion runs in constant Java stack space.
+    record TailCall(LoxFunction function, List<Object> arguments) {
+    }
+
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
+        Object result = sample(interpreter, arguments);
+        while (result instanceof TailCall) {
+            TailCall tailCall = (TailCall) result;
+            result = tailCall.function.sample(interpreter, tailCall.arguments);
+        }
+        return result;
+    }
+
+    private Object sample(Interpreter interpreter, List<Object> arguments) {
+        if (LoxSampler.ENABLED) {
+            interpreter.calls.push(this);
+            try {
+                return profile(interpreter, arguments);
+            } finally {
+                interpreter.calls.pop();
+            }
+        }
+        return profile(interpreter, arguments);
+    }
+
+    private Object profile(Interpreter interpreter, List<Object> arguments) {
+        if (LoxProfiler.ENABLED) {
+            LoxProfiler.enter(declaration);
+            try {
+                return record(interpreter, arguments);
+            } finally {
+                LoxProfiler.exit();
+            }
+        }
+        return record(interpreter, arguments);
+    }
+
+    // Calls that take longer than the threshold become jlox.Call events
+    private Object record(Interpreter interpreter, List<Object> arguments) {
+        if (!LoxEvents.active()) {
+            return invoke(interpreter, arguments);
+        }
+
+        LoxEvents.CallEvent event = new LoxEvents.CallEvent();
+        event.begin();
+        try {
+            return invoke(interpreter, arguments);
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.function = qualifiedName();
+                event.line = declaration.name.line;
+                event.commit();
+            }
+        }
+    }
+
+    private Object invoke(Interpreter interpreter, List<Object> arguments) {
+        if (LoxMachine.ENABLED) {
+            return interpreter.machine.call(this, arguments);
+        }
+
         Environment environment = new Environment(closure);
 
         for (int i = 0; i < declaration.params.size(); i++) {
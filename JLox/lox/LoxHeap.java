@@ -0,0 +1,351 @@
+package JLox.lox;
+
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A histogram of the Lox values reachable from a scope, for heapStats() and
+ * jlox --heap-report. A Java heap dump of a Lox program is mostly HashMap
+ * nodes, Environments and LoxInstances; this walk tells which Lox classes,
+ * closures and strings they belong to.
+ *
+ * Sizes are estimates for a 64-bit JVM with compressed references. The bytes
+ * retained by a class are those of its instances plus everything the walk
+ * first reached through one of them, so a value shared by two instances is
+ * charged to one of them, and an instance stored in another one is charged
+ * to its own class. Classes and methods are charged to nobody.
+ *
+ * Every value is visited once, so cycles end the walk. A walk keeps the
+ * values still to visit on a stack of its own and hands half of it to
+ * another ForkJoin task whenever it grows beyond SPLIT, so small heaps are
+ * walked on one thread and large ones on all cores.
+ */
+final class LoxHeap {
+
+    private static final int SPLIT = 1024;
+
+    // Estimated sizes in bytes
+    private static final int HEADER = 16;
+    private static final int REFERENCE = 4;
+    private static final int BOXED_DOUBLE = 16;
+    private static final int MAP_ENTRY = 32;
+
+    private static final class Closures {
+        final String name;
+        final int line;
+        long count;
+
+        Closures(LoxFunction function) {
+            this.name = function.qualifiedName();
+            this.line = function.declaration().name.line;
+        }
+    }
+
+    // What one walk task found, merged when the tasks are joined
+    private static final class Tally {
+        // Instances and retained bytes per class
+        final Map<LoxClass, long[]> classes = new IdentityHashMap<>();
+        final Map<Stmt.Function, Closures> closures = new IdentityHashMap<>();
+        long objects;
+        long bytes;
+        long strings;
+        long stringBytes;
+
+        void charge(LoxClass owner, long size) {
+            objects++;
+            bytes += size;
+            if (owner != null) {
+                classes.computeIfAbsent(owner, key -> new long[2])[1] += size;
+            }
+        }
+
+        void merge(Tally other) {
+            for (Map.Entry<LoxClass, long[]> entry : other.classes.entrySet()) {
+                long[] counts = classes.computeIfAbsent(entry.getKey(), key -> new long[2]);
+                counts[0] += entry.getValue()[0];
+                counts[1] += entry.getValue()[1];
+            }
+            for (Map.Entry<Stmt.Function, Closures> entry : other.closures.entrySet()) {
+                Closures closures = this.closures.putIfAbsent(entry.getKey(), entry.getValue());
+                if (closures != null) {
+                    closures.count += entry.getValue().count;
+                }
+            }
+            objects += other.objects;
+            bytes += other.bytes;
+            strings += other.strings;
+            stringBytes += other.stringBytes;
+        }
+    }
+
+    // A value still to visit and the class it is charged to
+    private record Pending(Object value, LoxClass owner) {
+    }
+
+    // Strings are compared by identity, so that equal strings are each counted
+    private static final class Identity {
+        private final Object value;
+
+        Identity(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Identity && ((Identity) other).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(value);
+        }
+    }
+
+    private static final class Walk extends RecursiveTask<Tally> {
+        private final Set<Object> visited;
+        private final ArrayDeque<Pending> pending;
+
+        Walk(Set<Object> visited, ArrayDeque<Pending> pending) {
+            this.visited = visited;
+            this.pending = pending;
+        }
+
+        @Override
+        protected Tally compute() {
+            Tally tally = new Tally();
+            List<Walk> forks = new ArrayList<>();
+            while (!pending.isEmpty()) {
+                if (pending.size() > SPLIT) {
+                    ArrayDeque<Pending> half = new ArrayDeque<>();
+                    for (int i = pending.size() / 2; i > 0; i--) {
+                        half.push(pending.removeLast());
+                    }
+                    Walk fork = new Walk(visited, half);
+                    fork.fork();
+                    forks.add(fork);
+                }
+                Pending next = pending.pop();
+                visit(next.value(), next.owner(), tally);
+            }
+            for (Walk fork : forks) {
+                tally.merge(fork.join());
+            }
+            return tally;
+        }
+
+        private void push(Object value, LoxClass owner) {
+            // Numbers, booleans and nil are sized by whatever holds them
+            if (value != null && value != Environment.NIL && !(value instanceof Double)
+                    && !(value instanceof Boolean)) {
+                pending.push(new Pending(value, owner));
+            }
+        }
+
+        private void visit(Object value, LoxClass owner, Tally tally) {
+            if (!visited.add(value instanceof String ? new Identity(value) : value)) {
+                return;
+            }
+
+            if (value instanceof String) {
+                long size = stringSize((String) value);
+                tally.strings++;
+                tally.stringBytes += size;
+                tally.charge(owner, size);
+            } else if (value instanceof LoxString) {
+                // The builder, whose capacity is at least the length
+                long size = align(HEADER + 3 * REFERENCE) + align(24) + array(((LoxString) value).length(), 2);
+                tally.strings++;
+                tally.stringBytes += size;
+                tally.charge(owner, size);
+            } else if (value instanceof LoxInstance) {
+                LoxInstance instance = (LoxInstance) value;
+                LoxClass klass = instance.klass();
+                tally.classes.computeIfAbsent(klass, key -> new long[2])[0]++;
+                tally.charge(klass, HEADER + 2 * REFERENCE + map(instance.fieldValues().size(), 64)
+                        + boxes(instance.fieldValues()));
+                for (Object field : instance.fieldValues()) {
+                    push(field, klass);
+                }
+                push(klass, null);
+            } else if (value instanceof LoxFunction) {
+                LoxFunction function = (LoxFunction) value;
+                Closures closures = tally.closures.get(function.declaration());
+                if (closures == null) {
+                    closures = new Closures(function);
+                    tally.closures.put(function.declaration(), closures);
+                }
+                closures.count++;
+                tally.charge(owner, align(HEADER + 4 * REFERENCE));
+                push(function.closure(), owner);
+            } else if (value instanceof Environment) {
+                Environment environment = (Environment) value;
+                tally.charge(owner, align(HEADER + REFERENCE + 2) + map(environment.size(), 48)
+                        + boxes(environment.values()));
+                for (Object variable : environment.values()) {
+                    push(variable, owner);
+                }
+                push(environment.enclosing, owner);
+            } else if (value instanceof LoxClass) {
+                LoxClass klass = (LoxClass) value;
+                tally.charge(null, align(HEADER + 5 * REFERENCE) + 2 * map(klass.methods().size(), 64));
+                for (LoxFunction method : klass.methods()) {
+                    push(method, null);
+                }
+                push(klass.superclass, null);
+            } else if (value instanceof LoxList) {
+                LoxList list = (LoxList) value;
+                int size = list.size();
+                if (list.holdsNumbers()) {
+                    tally.charge(owner, align(HEADER + 2 * REFERENCE + 4) + array(size, 8));
+                } else {
+                    long boxes = 0;
+                    for (int i = 0; i < size; i++) {
+                        Object element = list.get(i);
+                        if (element instanceof Double) {
+                            boxes += BOXED_DOUBLE;
+                        }
+                        push(element, owner);
+                    }
+                    tally.charge(owner, align(HEADER + 2 * REFERENCE + 4) + array(size, REFERENCE) + boxes);
+                }
+            } else if (value instanceof LoxMap) {
+                LoxMap map = (LoxMap) value;
+                Object[] keys = map.keys();
+                Object[] values = map.values();
+                int capacity = Math.max(8, Integer.highestOneBit(Math.max(1, (int) (keys.length / 0.75))) * 2);
+                long boxes = 0;
+                for (int i = 0; i < keys.length; i++) {
+                    boxes += (keys[i] instanceof Double ? BOXED_DOUBLE : 0)
+                            + (values[i] instanceof Double ? BOXED_DOUBLE : 0);
+                    push(keys[i], owner);
+                    push(values[i], owner);
+                }
+                tally.charge(owner, align(HEADER + 2 * REFERENCE + 8) + array(2 * capacity, REFERENCE)
+                        + array(capacity, 4) + boxes);
+            } else if (value instanceof LoxChannel) {
+                tally.charge(owner, align(HEADER + REFERENCE) + 64);
+                for (Object message : ((LoxChannel) value).contents()) {
+                    push(message, owner);
+                }
+            } else {
+                // Natives, tasks, buffers (their doubles are off-heap), readers and writers
+                tally.charge(owner, align(HEADER + 2 * REFERENCE));
+            }
+        }
+    }
+
+    private final Tally tally;
+
+    private LoxHeap(Tally tally) {
+        this.tally = tally;
+    }
+
+    // Walk every value reachable from the scope and the scopes enclosing it
+    static LoxHeap walk(Environment scope) {
+        Set<Object> visited = ConcurrentHashMap.newKeySet();
+        ArrayDeque<Pending> roots = new ArrayDeque<>();
+        roots.push(new Pending(scope, null));
+        return new LoxHeap(ForkJoinPool.commonPool().invoke(new Walk(visited, roots)));
+    }
+
+    // The result of heapStats(): a map with the maps "instances" and
+    // "retainedBytes" by class name and "closures" by function name, and
+    // the numbers "objects", "bytes", "strings" and "stringBytes"
+    LoxMap toMap() {
+        LoxMap instances = new LoxMap();
+        LoxMap retained = new LoxMap();
+        for (Map.Entry<LoxClass, long[]> entry : tally.classes.entrySet()) {
+            // Classes of the same name in different scopes are added up
+            String name = entry.getKey().name;
+            instances.put(name, number(instances.get(name)) + entry.getValue()[0]);
+            retained.put(name, number(retained.get(name)) + entry.getValue()[1]);
+        }
+        LoxMap closures = new LoxMap();
+        for (Closures function : tally.closures.values()) {
+            closures.put(function.name, number(closures.get(function.name)) + function.count);
+        }
+
+        LoxMap stats = new LoxMap();
+        stats.put("instances", instances);
+        stats.put("retainedBytes", retained);
+        stats.put("closures", closures);
+        stats.put("objects", (double) tally.objects);
+        stats.put("bytes", (double) tally.bytes);
+        stats.put("strings", (double) tally.strings);
+        stats.put("stringBytes", (double) tally.stringBytes);
+        return stats;
+    }
+
+    // Print the histogram, classes sorted by retained bytes
+    void report(PrintStream out) {
+        out.println();
+        out.println("== Heap ==");
+        out.printf("  %,d reachable objects, %,.1f KB (estimated)%n", tally.objects, tally.bytes / 1024.0);
+
+        List<Map.Entry<LoxClass, long[]>> classes = new ArrayList<>(tally.classes.entrySet());
+        classes.sort(Comparator.comparingLong((Map.Entry<LoxClass, long[]> entry) -> entry.getValue()[1])
+                .reversed());
+        out.println("Classes by retained size:");
+        out.printf("  %14s %14s  %s%n", "instances", "retained KB", "class");
+        for (Map.Entry<LoxClass, long[]> entry : classes) {
+            out.printf("  %,14d %,14.1f  %s%n", entry.getValue()[0], entry.getValue()[1] / 1024.0,
+                    entry.getKey().name);
+        }
+
+        List<Closures> closures = new ArrayList<>(tally.closures.values());
+        closures.sort(Comparator.comparingLong((Closures function) -> function.count).reversed());
+        out.println("Closures per function:");
+        out.printf("  %14s  %s%n", "closures", "function");
+        for (Closures function : closures) {
+            out.printf("  %,14d  %s (line %d)%n", function.count, function.name, function.line);
+        }
+
+        out.printf("Strings: %,d using %,.1f KB%n", tally.strings, tally.stringBytes / 1024.0);
+    }
+
+    private static double number(Object value) {
+        return value == null ? 0 : (double) value;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7;
+    }
+
+    private static long array(long length, int elementSize) {
+        return align(HEADER + length * elementSize);
+    }
+
+    // A HashMap or ConcurrentHashMap with its table and entries
+    private static long map(int size, int header) {
+        int capacity = Math.max(16, Integer.highestOneBit(Math.max(1, (int) (size / 0.75))) * 2);
+        return header + array(capacity, REFERENCE) + (long) size * MAP_ENTRY;
+    }
+
+    // Numbers stored in a scope or instance are boxed
+    private static long boxes(Iterable<Object> values) {
+        long size = 0;
+        for (Object value : values) {
+            if (value instanceof Double) {
+                size += BOXED_DOUBLE;
+            }
+        }
+        return size;
+    }
+
+    private static long stringSize(String text) {
+        boolean latin1 = true;
+        for (int i = 0; i < text.length() && latin1; i++) {
+            latin1 = text.charAt(i) < 256;
+        }
+        return align(HEADER + 2 * REFERENCE + 4) + array(text.length(), latin1 ? 1 : 2);
+    }
+}
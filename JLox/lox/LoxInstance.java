@@ -1,29 +1,48 @@
 package JLox.lox;
 
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 class LoxInstance {
   private LoxClass klass;
-  private final Map<String, Object> fields = new HashMap<>();
+
+  // Instances can be handed to other threads at any time, so fields live in a
+  // concurrent map: racing writes never corrupt it and the last write wins.
+  private final Map<String, Object> fields = new ConcurrentHashMap<>();
 
   LoxInstance(LoxClass klass) {
     this.klass = klass;
+    LoxEvents.instanceCreated(this, klass);
+  }
+
+  LoxClass klass() {
+    return klass;
   }
 
-  public Object get(Token name) {
-    if (fields.containsKey(name.lexeme)) {
-      return fields.get(name.lexeme);
+  // Field values with nil masked as NIL, for LoxHeap
+  Collection<Object> fieldValues() {
+    return fields.values();
+  }
+
+  public Object get(Token name, LoxRuntime.Counters counters) {
+    Object value = fields.get(name.lexeme);
+    if (value != null) {
+      return Environment.unmask(value);
     }
 
-    LoxFunction method = klass.findMethod(name.lexeme);
-    if (method != null) return method.bind(this);
+    LoxFunction method = klass.findMethod(name.lexeme, counters);
+    if (method != null) {
+      counters.environments++;
+      return method.bind(this);
+    }
 
     throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
   }
 
   void set(Token name, Object value) {
-    fields.put(name.lexeme, value);
+    Environment.publish(value);
+    fields.put(name.lexeme, Environment.mask(value));
   }
 
   @Override
@@ -0,0 +1,130 @@
+package JLox.lox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads UTF-8 text from a channel one line at a time, created by
+ * openLines(path). Bytes are read and decoded in 64 KB blocks, so memory use
+ * is bounded by the longest line, not by the size of the input.
+ * Lines end at "\n" or "\r\n"; the terminator is not part of the line.
+ */
+class LoxLineReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ReadableByteChannel channel;
+
+    // Runs before every read from the channel, which may block
+    private final Runnable beforeRead;
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+    // The start of a line that continues in the next block
+    private final StringBuilder partial = new StringBuilder();
+
+    private boolean endOfInput;
+    private boolean finished;
+
+    LoxLineReader(ReadableByteChannel channel) {
+        this(channel, () -> {
+        });
+    }
+
+    LoxLineReader(ReadableByteChannel channel, Runnable beforeRead) {
+        this.channel = channel;
+        this.beforeRead = beforeRead;
+        chars.flip();
+    }
+
+    // The next line, or null at the end of the input
+    String readLine() throws IOException {
+        while (true) {
+            char[] buffer = chars.array();
+            int start = chars.position();
+            int end = chars.limit();
+
+            for (int i = start; i < end; i++) {
+                if (buffer[i] == '\n') {
+                    chars.position(i + 1);
+                    return line(buffer, start, i);
+                }
+            }
+
+            partial.append(buffer, start, end - start);
+            chars.position(end);
+            if (!fill()) {
+                if (partial.length() == 0) {
+                    close();
+                    return null;
+                }
+                return line(buffer, 0, 0);
+            }
+        }
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    // The partial line plus buffer[from, to), without a trailing '\r'
+    private String line(char[] buffer, int from, int to) {
+        String line;
+        if (partial.length() == 0) {
+            line = new String(buffer, from, to - from);
+        } else {
+            partial.append(buffer, from, to - from);
+            line = partial.toString();
+            partial.setLength(0);
+        }
+
+        if (line.endsWith("\r")) {
+            return line.substring(0, line.length() - 1);
+        }
+        return line;
+    }
+
+    // Decode the next block of characters, false once everything was decoded
+    private boolean fill() throws IOException {
+        if (finished) {
+            return false;
+        }
+
+        chars.clear();
+        while (chars.position() == 0) {
+            if (!endOfInput) {
+                beforeRead.run();
+                if (channel.read(bytes) == -1) {
+                    endOfInput = true;
+                }
+            }
+
+            bytes.flip();
+            CoderResult result = decoder.decode(bytes, chars, endOfInput);
+            bytes.compact();
+
+            if (endOfInput && result.isUnderflow()) {
+                decoder.flush(chars);
+                finished = true;
+                break;
+            }
+        }
+
+        chars.flip();
+        return chars.hasRemaining();
+    }
+
+    @Override
+    public String toString() {
+        return "<line reader>";
+    }
+}
@@ -0,0 +1,137 @@
+package JLox.lox;
+
+import java.util.Arrays;
+
+/**
+ * A growable array of Lox values, created by a list literal like [1, 2, 3].
+ * While every element is a number they are stored unboxed in a double[];
+ * the first non-number switches the list to an Object[] for good.
+ *
+ * Lists are not synchronized: tasks may read a list together, but a list that
+ * one task modifies must not be touched by another until it is handed over
+ * through join() or a channel.
+ */
+class LoxList {
+    private static final int INITIAL_CAPACITY = 8;
+
+    // Exactly one of these holds the elements
+    private double[] numbers;
+    private Object[] objects;
+    private int size;
+
+    LoxList() {
+        this.numbers = new double[INITIAL_CAPACITY];
+    }
+
+    // Take ownership of the array, e.g. the result of a parallel operation
+    LoxList(Object[] elements) {
+        this.size = elements.length;
+        for (Object element : elements) {
+            if (!(element instanceof Double)) {
+                this.objects = elements;
+                return;
+            }
+        }
+
+        this.numbers = new double[Math.max(INITIAL_CAPACITY, size)];
+        for (int i = 0; i < size; i++) {
+            numbers[i] = (double) elements[i];
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Callers check the index, see Interpreter.listIndex()
+    Object get(int index) {
+        if (numbers != null) {
+            return numbers[index];
+        }
+        return objects[index];
+    }
+
+    // Whether getNumber() may be used instead of get()
+    boolean holdsNumbers() {
+        return numbers != null;
+    }
+
+    double getNumber(int index) {
+        return numbers[index];
+    }
+
+    void set(int index, Object value) {
+        if (numbers != null) {
+            if (value instanceof Double) {
+                numbers[index] = (double) value;
+                return;
+            }
+            generalize();
+        }
+        objects[index] = value;
+    }
+
+    void add(Object value) {
+        if (numbers != null) {
+            if (value instanceof Double) {
+                if (size == numbers.length) {
+                    numbers = Arrays.copyOf(numbers, size * 2);
+                }
+                numbers[size++] = (double) value;
+                return;
+            }
+            generalize();
+        }
+
+        if (size == objects.length) {
+            objects = Arrays.copyOf(objects, Math.max(INITIAL_CAPACITY, size * 2));
+        }
+        objects[size++] = value;
+    }
+
+    Object removeLast() {
+        Object last = get(--size);
+        if (objects != null) {
+            // Let the garbage collector have it
+            objects[size] = null;
+        }
+        return last;
+    }
+
+    // A copy of the elements, for operations that must not see later changes
+    Object[] toArray() {
+        Object[] elements = new Object[size];
+        for (int i = 0; i < size; i++) {
+            elements[i] = get(i);
+        }
+        return elements;
+    }
+
+    // Replace the elements in place with the same number of values
+    void setAll(Object[] values) {
+        for (int i = 0; i < size; i++) {
+            set(i, values[i]);
+        }
+    }
+
+    // Switch to boxed storage before the first non-number goes in
+    private void generalize() {
+        objects = new Object[Math.max(INITIAL_CAPACITY, numbers.length)];
+        for (int i = 0; i < size; i++) {
+            objects[i] = numbers[i];
+        }
+        numbers = null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                text.append(", ");
+            }
+            text.append(Interpreter.stringify(get(i)));
+        }
+        return text.append("]").toString();
+    }
+}
@@ -0,0 +1,756 @@
+package JLox.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs Lox code on stacks of its own instead of the Java stack, for scripts
+ * that recurse deeper than the JVM's thread stack allows. Every Lox call
+ * costs about six Java frames in the Interpreter, so a default thread stack
+ * overflows after a few thousand levels. Here a call costs a Frame and a few
+ * slots on the machine's arrays, and recursion is limited by a budget on the
+ * heap, after which the call fails with the runtime error "Stack overflow."
+ *
+ * The mode is switched on with -Djlox.stack=size, e.g. 512m, which is the
+ * budget. ENABLED is a static final, so the Interpreter keeps its recursive
+ * calls when it is off.
+ *
+ * Pending work lives on a task stack: a node, or a marker, with the step it
+ * has reached. Expression results go to an operand stack. Variables, literals,
+ * this and super cannot call anything, so they are evaluated by the
+ * Interpreter right away, and so are function and class declarations. All
+ * other semantics come from the Interpreter's helpers, so both modes behave
+ * the same. Natives that call back into Lox, like parallelMap, run the
+ * callback in a nested run of the machine.
+ *
+ * A Lox frame takes about FRAME_BYTES: the Frame, the scope of its parameters
+ * (a HashMap with its table and the entries of the parameters), the argument
+ * list, and the tasks of the call and of the statement that made it. Locals
+ * of nested blocks add a scope of their own, but they are not counted.
+ * Explicit-stack mode is slower than the recursive Interpreter, since every
+ * node goes through the task stack.
+ */
+final class LoxMachine implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+
+    static final boolean ENABLED = System.getProperty("jlox.stack") != null;
+
+    // Estimated heap bytes per Lox call, see above
+    static final int FRAME_BYTES = 320;
+
+    private static final long DEFAULT_BUDGET = 256L << 20;
+    private static final long MAX_DEPTH = ENABLED ? budget() / FRAME_BYTES : 0;
+
+    // A Lox call in progress
+    private static final class Frame {
+        LoxFunction function;
+        final Environment caller;
+        // Height of the operand stack when the call was made
+        final int values;
+        // Whether the machine called the profiler and sampler hooks for this
+        // call, rather than LoxFunction.call()
+        boolean hooked;
+
+        Frame(LoxFunction function, Environment caller, int values, boolean hooked) {
+            this.function = function;
+            this.caller = caller;
+            this.values = values;
+            this.hooked = hooked;
+        }
+    }
+
+    private final Interpreter interpreter;
+
+    // The task stack: a node (Expr, Stmt or a statement list) or a marker
+    // (Frame, or the Environment to go back to when a block ends) and its step
+    private Object[] tasks = new Object[256];
+    private int[] steps = new int[256];
+    private int top;
+
+    // The operand stack
+    private Object[] values = new Object[256];
+    private int count;
+
+    // Lox calls on the task stack
+    private long depth;
+
+    // Step of the task being run
+    private int step;
+
+    LoxMachine(Interpreter interpreter) {
+        this.interpreter = interpreter;
+    }
+
+    // The budget given by jlox.stack, in bytes
+    private static long budget() {
+        String size = System.getProperty("jlox.stack").trim().toLowerCase();
+        long unit = 1;
+        if (size.endsWith("k")) {
+            unit = 1L << 10;
+        } else if (size.endsWith("m")) {
+            unit = 1L << 20;
+        } else if (size.endsWith("g")) {
+            unit = 1L << 30;
+        }
+        try {
+            long budget = Long.parseLong(unit == 1 ? size : size.substring(0, size.length() - 1)) * unit;
+            if (budget > 0) {
+                return budget;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        System.err.println("Invalid stack budget '" + size + "', expected a size like 512m.");
+        return DEFAULT_BUDGET;
+    }
+
+    // Execute top-level statements in the interpreter's current scope
+    void execute(List<Stmt> statements) {
+        int base = top;
+        push(statements);
+        run(base);
+    }
+
+    // Run a function to completion, for LoxFunction.call(), which has
+    // already called the profiler and sampler hooks
+    Object call(LoxFunction function, List<Object> arguments) {
+        int base = top;
+        enter(function, arguments, false, function.declaration().name);
+        run(base);
+        return values[--count];
+    }
+
+    private void run(int base) {
+        int bottom = count;
+        try {
+            while (top > base) {
+                int task = top - 1;
+                Object node = tasks[task];
+                step = steps[task];
+                if (node instanceof Expr) {
+                    ((Expr) node).accept(this);
+                } else if (node instanceof Stmt) {
+                    ((Stmt) node).accept(this);
+                } else if (node instanceof List) {
+                    statements(node);
+                } else if (node instanceof Frame) {
+                    // The function ended without a return statement
+                    pop();
+                    leave((Frame) node, null);
+                } else {
+                    pop();
+                    interpreter.environment = (Environment) node;
+                }
+            }
+        } catch (RuntimeError error) {
+            unwind(base, error);
+            Arrays.fill(values, bottom, count, null);
+            count = bottom;
+            throw error;
+        }
+    }
+
+    // Drop the tasks above base after an error, leaving every call and scope
+    // and telling probes about the error
+    private void unwind(int base, RuntimeError error) {
+        while (top > base) {
+            Object node = tasks[top - 1];
+            pop();
+            if (node instanceof Frame) {
+                Frame frame = (Frame) node;
+                interpreter.environment = frame.caller;
+                depth--;
+                unhook(frame);
+            } else if (node instanceof Environment) {
+                interpreter.environment = (Environment) node;
+            } else if (node instanceof Expr.Probe) {
+                LoxProbe probe = ((Expr.Probe) node).probe;
+                probe.tool.onException(probe, error);
+            } else if (node instanceof Stmt.Probe) {
+                LoxProbe probe = ((Stmt.Probe) node).probe;
+                probe.tool.onException(probe, error);
+            }
+        }
+    }
+
+    private void push(Object task) {
+        if (top == tasks.length) {
+            tasks = Arrays.copyOf(tasks, top * 2);
+            steps = Arrays.copyOf(steps, top * 2);
+        }
+        tasks[top] = task;
+        steps[top++] = 0;
+    }
+
+    // Done with the current task
+    private void pop() {
+        tasks[--top] = null;
+    }
+
+    // The current task continues at the given step once the work pushed after it is done
+    private void next(int step) {
+        steps[top - 1] = step;
+    }
+
+    private void value(Object value) {
+        if (count == values.length) {
+            values = Arrays.copyOf(values, count * 2);
+        }
+        values[count++] = value;
+    }
+
+    private Object take() {
+        Object value = values[--count];
+        values[count] = null;
+        return value;
+    }
+
+    // An operand as Interpreter.evaluate() would hand it out
+    private Object takeFlat() {
+        Object value = take();
+        return value instanceof LoxString ? ((LoxString) value).flatten() : value;
+    }
+
+    private Object peek() {
+        return values[count - 1];
+    }
+
+    // Evaluate the expression, its value ends up on the operand stack
+    private void evaluate(Expr expr) {
+        if (expr instanceof Expr.Variable || expr instanceof Expr.Literal || expr instanceof Expr.This
+                || expr instanceof Expr.Super) {
+            value(expr.accept(interpreter));
+        } else {
+            push(expr);
+        }
+    }
+
+    // Like Interpreter.execute()
+    private void execute(Stmt stmt) {
+        interpreter.counters.statement();
+        if (LoxProfiler.ENABLED) {
+            LoxProfiler.statement(stmt.line);
+        }
+        if (stmt instanceof Stmt.Function || stmt instanceof Stmt.Class) {
+            stmt.accept(interpreter);
+        } else {
+            push(stmt);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void statements(Object node) {
+        List<Stmt> statements = (List<Stmt>) node;
+        if (step < statements.size()) {
+            next(step + 1);
+            execute(statements.get(step));
+        } else {
+            pop();
+        }
+    }
+
+    // Start a call of the function: its frame, a scope with the parameters
+    // and its body go onto the task stack
+    private void enter(LoxFunction function, List<Object> arguments, boolean hooked, Token token) {
+        if (depth >= MAX_DEPTH) {
+            throw new RuntimeError(token, "Stack overflow.");
+        }
+        depth++;
+        Frame frame = new Frame(function, interpreter.environment, count, hooked);
+        if (hooked) {
+            hook(function);
+        }
+        push(frame);
+        begin(function, arguments);
+    }
+
+    private void begin(LoxFunction function, List<Object> arguments) {
+        Stmt.Function declaration = function.declaration();
+        Environment environment = new Environment(function.closure());
+        for (int i = 0; i < declaration.params.size(); i++) {
+            environment.define(declaration.params.get(i).lexeme, arguments.get(i));
+        }
+        interpreter.counters.environments++;
+        interpreter.environment = environment;
+        push(declaration.body);
+    }
+
+    // Return from the innermost call with the value, leaving the tasks above
+    // its frame. Probed statements on the way see the value.
+    private void returnValue(Object value) {
+        while (true) {
+            Object node = tasks[top - 1];
+            pop();
+            if (node instanceof Frame) {
+                leave((Frame) node, value);
+                return;
+            }
+            if (node instanceof Stmt.Probe) {
+                LoxProbe probe = ((Stmt.Probe) node).probe;
+                probe.tool.onReturn(probe, value);
+            }
+        }
+    }
+
+    private void leave(Frame frame, Object value) {
+        interpreter.environment = frame.caller;
+        depth--;
+        unhook(frame);
+        Arrays.fill(values, frame.values, count, null);
+        count = frame.values;
+        LoxFunction function = frame.function;
+        value(function.isInitializer() ? function.closure().getAt(0, "this") : value);
+    }
+
+    // A call in tail position replaces the call that makes it: the frame is
+    // reused, so tail recursion needs no budget
+    private void tailCall(LoxFunction function, List<Object> arguments) {
+        while (!(tasks[top - 1] instanceof Frame)) {
+            Object node = tasks[top - 1];
+            pop();
+            if (node instanceof Stmt.Probe) {
+                // The Resolver never flags calls inside probed statements
+                throw new IllegalStateException("Tail call inside a probed statement.");
+            }
+        }
+        Frame frame = (Frame) tasks[top - 1];
+        unhook(frame);
+        frame.function = function;
+        frame.hooked = true;
+        hook(function);
+        Arrays.fill(values, frame.values, count, null);
+        count = frame.values;
+        begin(function, arguments);
+    }
+
+    private void hook(LoxFunction function) {
+        if (LoxSampler.ENABLED) {
+            interpreter.calls.push(function);
+        }
+        if (LoxProfiler.ENABLED) {
+            LoxProfiler.enter(function.declaration());
+        }
+    }
+
+    private void unhook(Frame frame) {
+        if (!frame.hooked) {
+            return;
+        }
+        if (LoxProfiler.ENABLED) {
+            LoxProfiler.exit();
+        }
+        if (LoxSampler.ENABLED) {
+            interpreter.calls.pop();
+        }
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        if (step == 0) {
+            next(1);
+            evaluate(expr.value);
+            return null;
+        }
+        pop();
+        interpreter.assign(expr, peek());
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        if (step == 0) {
+            next(1);
+            evaluate(expr.left);
+            return null;
+        }
+        if (step == 1) {
+            next(2);
+            evaluate(expr.right);
+            return null;
+        }
+        pop();
+        Object right = takeFlat();
+        // s + a + b appends to the concatenation s + a (see LoxString)
+        Object left = expr.operator.type == TokenType.PLUS ? take() : takeFlat();
+        value(interpreter.binary(expr.operator, left, right));
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        if (step == 0) {
+            next(1);
+            evaluate(expr.object);
+            return null;
+        }
+        pop();
+        value(interpreter.get(expr.name, takeFlat()));
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        int arguments = expr.arguments.size();
+        if (step == 0) {
+            next(1);
+            evaluate(expr.callee);
+            return null;
+        }
+        if (step <= arguments) {
+            next(step + 1);
+            evaluate(expr.arguments.get(step - 1));
+            return null;
+        }
+        pop();
+
+        List<Object> values = new ArrayList<>(arguments);
+        for (int i = count - arguments; i < count; i++) {
+            Object value = this.values[i];
+            values.add(value instanceof LoxString ? ((LoxString) value).flatten() : value);
+        }
+        Arrays.fill(this.values, count - arguments, count, null);
+        count -= arguments;
+        Object callee = takeFlat();
+        LoxCallable function = interpreter.callable(expr, callee, arguments);
+
+        if (function instanceof LoxFunction) {
+            if (expr.tailCall) {
+                tailCall((LoxFunction) function, values);
+            } else {
+                enter((LoxFunction) function, values, true, expr.paren);
+            }
+            return null;
+        }
+
+        // Like LoxClass.call(), with the initializer on the task stack
+        if (function instanceof LoxClass && ((LoxClass) function).initializer() != null) {
+            LoxClass klass = (LoxClass) function;
+            LoxInstance instance = new LoxInstance(klass);
+            interpreter.counters.instances++;
+            interpreter.counters.environments++;
+            enter(klass.initializer().bind(instance), values, true, expr.paren);
+            return null;
+        }
+
+        try {
+            value(function.call(interpreter, values));
+        } catch (RuntimeError error) {
+            // Errors raised by natives don't know where they were called from
+            if (error.token == null) {
+                throw new RuntimeError(expr.paren, error.getMessage());
+            }
+            throw error;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        if (step == 0) {
+            next(1);
+            evaluate(expr.expression);
+            return null;
+        }
+        pop();
+        value(takeFlat());
+        return null;
+    }
+
+    @Override
+    public Void visitIndexExpr(Expr.Index expr) {
+        if (step == 0) {
+            next(1);
+            evaluate(expr.object);
+            return null;
+        }
+        if (step == 1) {
+            next(2);
+            evaluate(expr.index);
+            return null;
+        }
+        pop();
+        Object index = takeFlat();
+        value(interpreter.index(expr.bracket, takeFlat(), index));
+        return null;
+    }
+
+    @Override
+    public Void visitListLiteralExpr(Expr.ListLiteral expr) {
+        int elements = expr.elements.size();
+        if (step < elements) {
+            next(step + 1);
+            evaluate(expr.elements.get(step));
+            return null;
+        }
+        pop();
+        LoxList list = new LoxList();
+        for (int i = count - elements; i < count; i++) {
+            Object value = values[i];
+            list.add(value instanceof LoxString ? ((LoxString) value).flatten() : value);
+        }
+        Arrays.fill(values, count - elements, count, null);
+        count -= elements;
+        value(list);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        pop();
+        value(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        if (step == 0) {
+            next(1);
+            evaluate(expr.left);
+            return null;
+        }
+        if (step == 1) {
+            Object left = takeFlat();
+            boolean truthy = interpreter.isTruthy(left);
+            if (expr.operator.type == TokenType.OR ? truthy : !truthy) {
+                pop();
+                value(left);
+            } else {
+                next(2);
+                evaluate(expr.right);
+            }
+            return null;
+        }
+        pop();
+        value(takeFlat());
+        return null;
+    }
+
+    @Override
+    public Void visitProbeExpr(Expr.Probe expr) {
+        LoxProbe probe = expr.probe;
+        if (step == 0) {
+            probe.tool.onEnter(probe);
+            next(1);
+            evaluate(expr.expression);
+            return null;
+        }
+        pop();
+        Object value = peek();
+        probe.tool.onReturn(probe, value instanceof LoxString ? ((LoxString) value).flatten() : value);
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        if (step == 0) {
+            next(1);
+            evaluate(expr.object);
+            return null;
+        }
+        if (step == 1) {
+            value(interpreter.fieldsOf(expr.name, takeFlat()));
+            next(2);
+            evaluate(expr.value);
+            return null;
+        }
+        pop();
+        Object value = takeFlat();
+        LoxInstance object = (LoxInstance) take();
+        object.set(expr.name, value);
+        value(value);
+        return null;
+    }
+
+    @Override
+    public Void visitSetIndexExpr(Expr.SetIndex expr) {
+        if (step == 0) {
+            next(1);
+            evaluate(expr.object);
+            return null;
+        }
+        if (step == 1) {
+            next(2);
+            evaluate(expr.index);
+            return null;
+        }
+        if (step == 2) {
+            Object index = takeFlat();
+            Object object = takeFlat();
+            interpreter.checkIndexTarget(expr.bracket, object, index);
+            value(object);
+            value(index);
+            next(3);
+            evaluate(expr.value);
+            return null;
+        }
+        pop();
+        Object value = takeFlat();
+        Object index = take();
+        value(interpreter.setIndex(expr.bracket, take(), index, value));
+        return null;
+    }
+
+    @Override
+    public Void visitSuperExpr(Expr.Super expr) {
+        pop();
+        value(interpreter.visitSuperExpr(expr));
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpr(Expr.This expr) {
+        pop();
+        value(interpreter.visitThisExpr(expr));
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        if (step == 0) {
+            next(1);
+            evaluate(expr.right);
+            return null;
+        }
+        pop();
+        value(interpreter.unary(expr.operator, takeFlat()));
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        pop();
+        value(interpreter.visitVariableExpr(expr));
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        pop();
+        interpreter.counters.environments++;
+        push(interpreter.environment);
+        interpreter.environment = new Environment(interpreter.environment);
+        push(stmt.statements);
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        pop();
+        stmt.accept(interpreter);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        if (step == 0) {
+            next(1);
+            evaluate(stmt.expression);
+            return null;
+        }
+        pop();
+        take();
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        pop();
+        stmt.accept(interpreter);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        if (step == 0) {
+            next(1);
+            evaluate(stmt.codition);
+            return null;
+        }
+        pop();
+        if (interpreter.isTruthy(takeFlat())) {
+            execute(stmt.thenBranch);
+        } else if (stmt.elseBranch != null) {
+            execute(stmt.elseBranch);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        if (step == 0) {
+            next(1);
+            evaluate(stmt.expression);
+            return null;
+        }
+        pop();
+        interpreter.print(takeFlat());
+        return null;
+    }
+
+    // The statement is pushed without execute(), so it is counted once, as the probe
+    @Override
+    public Void visitProbeStmt(Stmt.Probe stmt) {
+        LoxProbe probe = stmt.probe;
+        if (step == 0) {
+            probe.tool.onEnter(probe);
+            next(1);
+            if (stmt.statement instanceof Stmt.Function || stmt.statement instanceof Stmt.Class) {
+                stmt.statement.accept(interpreter);
+            } else {
+                push(stmt.statement);
+            }
+            return null;
+        }
+        pop();
+        probe.tool.onReturn(probe, null);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        if (stmt.value == null) {
+            returnValue(null);
+            return null;
+        }
+        if (step == 0) {
+            next(1);
+            evaluate(stmt.value);
+            return null;
+        }
+        returnValue(takeFlat());
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        if (stmt.initializer == null) {
+            pop();
+            interpreter.environment.define(stmt.name.lexeme, null);
+            return null;
+        }
+        if (step == 0) {
+            next(1);
+            evaluate(stmt.initializer);
+            return null;
+        }
+        pop();
+        interpreter.environment.define(stmt.name.lexeme, take());
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        if (step == 0) {
+            next(1);
+            evaluate(stmt.condition);
+            return null;
+        }
+        if (interpreter.isTruthy(takeFlat())) {
+            next(0);
+            execute(stmt.body);
+        } else {
+            pop();
+        }
+        return null;
+    }
+}
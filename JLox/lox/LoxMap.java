@@ -0,0 +1,187 @@
+package JLox.lox;
+
+/**
+ * A hash map from Lox values to Lox values, created by map().
+ * Numbers, strings, booleans and nil are compared by value like ==, every
+ * other key (instances, lists, functions) by identity.
+ *
+ * The table works like the one of clox (CLox/src/table.c): open addressing
+ * with linear probing, tombstones for deleted entries and a maximum load of
+ * 75%. Every key sits next to its value in one array, so a lookup usually
+ * touches a single cache line, and the hashes are cached in a parallel array
+ * so that probing past other keys never calls their equals().
+ *
+ * Maps are not synchronized, the same rules as for lists apply.
+ */
+public final class LoxMap {
+    private static final double MAX_LOAD = 0.75;
+    private static final int INITIAL_CAPACITY = 8;
+
+    // Marks a deleted entry, so probing continues past it
+    private static final Object TOMBSTONE = new Object();
+
+    // Slot i has its key at entries[2 * i] and its value at entries[2 * i + 1].
+    // An empty slot has a null key; nil keys are stored as Environment.NIL.
+    private Object[] entries;
+    private int[] hashes;
+
+    // Live entries, and live entries plus tombstones
+    private int size;
+    private int count;
+
+    public LoxMap() {
+        this.entries = new Object[2 * INITIAL_CAPACITY];
+        this.hashes = new int[INITIAL_CAPACITY];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // The value for the key, or nil when it is missing
+    public Object get(Object key) {
+        int slot = find(entries, hashes, Environment.mask(key), hash(key));
+        return isLive(entries[2 * slot]) ? entries[2 * slot + 1] : null;
+    }
+
+    public boolean containsKey(Object key) {
+        return isLive(entries[2 * find(entries, hashes, Environment.mask(key), hash(key))]);
+    }
+
+    public void put(Object key, Object value) {
+        if (count + 1 > hashes.length * MAX_LOAD) {
+            resize(hashes.length * 2);
+        }
+
+        int hash = hash(key);
+        int slot = find(entries, hashes, Environment.mask(key), hash);
+        if (!isLive(entries[2 * slot])) {
+            size++;
+            // Reusing a tombstone doesn't change the count
+            if (entries[2 * slot] == null) {
+                count++;
+            }
+            // Interned, so lookups with a string literal match by identity
+            entries[2 * slot] = key instanceof String ? ((String) key).intern() : Environment.mask(key);
+            hashes[slot] = hash;
+        }
+        entries[2 * slot + 1] = value;
+    }
+
+    // Remove the key and return its value, or nil when it was missing
+    public Object remove(Object key) {
+        int slot = find(entries, hashes, Environment.mask(key), hash(key));
+        if (!isLive(entries[2 * slot])) {
+            return null;
+        }
+
+        Object value = entries[2 * slot + 1];
+        entries[2 * slot] = TOMBSTONE;
+        entries[2 * slot + 1] = null;
+        size--;
+        return value;
+    }
+
+    // The keys in table order, which is stable as long as the map isn't changed
+    public Object[] keys() {
+        Object[] result = new Object[size];
+        int next = 0;
+        for (int i = 0; i < entries.length; i += 2) {
+            if (isLive(entries[i])) {
+                result[next++] = Environment.unmask(entries[i]);
+            }
+        }
+        return result;
+    }
+
+    // The values in the same order as keys()
+    public Object[] values() {
+        Object[] result = new Object[size];
+        int next = 0;
+        for (int i = 0; i < entries.length; i += 2) {
+            if (isLive(entries[i])) {
+                result[next++] = entries[i + 1];
+            }
+        }
+        return result;
+    }
+
+    // The slot holding the key, or else the slot to insert it into: the first
+    // tombstone on the way, or the empty slot that ended the probe sequence
+    private static int find(Object[] entries, int[] hashes, Object key, int hash) {
+        int mask = hashes.length - 1;
+        int index = hash & mask;
+        int tombstone = -1;
+
+        while (true) {
+            Object candidate = entries[2 * index];
+            if (candidate == key) {
+                return index;
+            }
+
+            if (candidate == null) {
+                return tombstone != -1 ? tombstone : index;
+            }
+
+            if (candidate == TOMBSTONE) {
+                if (tombstone == -1) {
+                    tombstone = index;
+                }
+            } else if (hashes[index] == hash && candidate.equals(key)) {
+                return index;
+            }
+
+            index = (index + 1) & mask;
+        }
+    }
+
+    // Rehash the live entries, dropping the tombstones
+    private void resize(int capacity) {
+        Object[] newEntries = new Object[2 * capacity];
+        int[] newHashes = new int[capacity];
+
+        for (int i = 0; i < hashes.length; i++) {
+            Object key = entries[2 * i];
+            if (isLive(key)) {
+                int slot = find(newEntries, newHashes, key, hashes[i]);
+                newEntries[2 * slot] = key;
+                newEntries[2 * slot + 1] = entries[2 * i + 1];
+                newHashes[slot] = hashes[i];
+            }
+        }
+
+        entries = newEntries;
+        hashes = newHashes;
+        count = size;
+    }
+
+    private static boolean isLive(Object key) {
+        return key != null && key != TOMBSTONE;
+    }
+
+    // Doubles that hold small integers differ only in their high bits, so mix
+    // them down before the low bits pick the slot
+    private static int hash(Object key) {
+        int hash = key == null ? 0 : key.hashCode();
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("{");
+        boolean first = true;
+        for (int i = 0; i < entries.length; i += 2) {
+            if (isLive(entries[i])) {
+                if (!first) {
+                    text.append(", ");
+                }
+                first = false;
+                text.append(Interpreter.stringify(Environment.unmask(entries[i])))
+                        .append(": ")
+                        .append(Interpreter.stringify(entries[i + 1]));
+            }
+        }
+        return text.append("}").toString();
+    }
+}
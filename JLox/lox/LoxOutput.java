@@ -0,0 +1,335 @@
+package JLox.lox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where print statements write. Every line a script prints goes through one
+ * sink, which decides when its bytes reach the underlying stream:
+ *
+ * BLOCK collects the UTF-8 bytes in a 64 KB buffer and writes it when it is
+ * full, so a loop of prints costs one system call per 64 KB.
+ * LINE writes every line as soon as it is printed, for terminals.
+ * ASYNC hands the lines to a dedicated writer thread through a ring buffer,
+ * so the interpreter never waits for the stream unless the ring is full.
+ *
+ * Every sink is flushed when a run ends and before a runtime error is
+ * reported, so output printed before an error shows up ahead of its message
+ * on stderr. Like PrintStream, sinks never throw: after a write error (e.g.
+ * the reader of a pipe went away) further output is dropped.
+ */
+public abstract class LoxOutput {
+
+    public enum Mode {
+        BLOCK, LINE, ASYNC
+    }
+
+    // Write the text followed by a line separator
+    public abstract void println(String text);
+
+    // Print a number the way stringify() formats it
+    public void println(double value) {
+        println(NumberFormatter.format(value));
+    }
+
+    // Push everything printed so far to the underlying stream
+    public abstract void flush();
+
+    // Flush and release the sink; nothing may be printed afterwards
+    public void close() {
+        flush();
+    }
+
+    // A sink over a print stream, which keeps its own buffering policy
+    public static LoxOutput of(PrintStream stream) {
+        return new StreamOutput(stream);
+    }
+
+    public static LoxOutput create(OutputStream stream, Mode mode) {
+        switch (mode) {
+            case LINE:
+                return new BufferedOutput(stream, true);
+            case ASYNC:
+                return new AsyncOutput(new BufferedOutput(stream, false));
+            default:
+                return new BufferedOutput(stream, false);
+        }
+    }
+
+    // The mode named by the jlox.output system property, or the fallback
+    static Mode mode(Mode fallback) {
+        String name = System.getProperty("jlox.output");
+        if (name == null) {
+            return fallback;
+        }
+        try {
+            return Mode.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown output mode '" + name + "', expected block, line or async.");
+            return fallback;
+        }
+    }
+
+    private static final class StreamOutput extends LoxOutput {
+        private static final int LINE_SEPARATOR_LENGTH = System.lineSeparator().length();
+
+        private final PrintStream stream;
+
+        StreamOutput(PrintStream stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        public void println(String text) {
+            stream.println(text);
+            // The stream does the encoding, so count what UTF-8 would take,
+            // like the other outputs
+            LoxRuntime.printBytes.add(utf8Length(text) + LINE_SEPARATOR_LENGTH);
+        }
+
+        // Bytes of the text in UTF-8, without encoding it. A lone surrogate
+        // becomes '?', as in String.getBytes().
+        private static int utf8Length(String text) {
+            int length = text.length();
+            int bytes = length;
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    continue;
+                }
+                if (c < 0x800) {
+                    bytes += 1;
+                } else if (!Character.isSurrogate(c)) {
+                    bytes += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    // Two chars, four bytes
+                    bytes += 2;
+                    i++;
+                }
+            }
+            return bytes;
+        }
+
+        @Override
+        public void flush() {
+            stream.flush();
+        }
+    }
+
+    // Encodes lines into a byte buffer of its own, so printing neither
+    // allocates nor goes through the locks and encoder of a PrintStream
+    private static final class BufferedOutput extends LoxOutput {
+        private static final int BUFFER_SIZE = 1 << 16;
+        private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+        private final OutputStream stream;
+        private final boolean flushEveryLine;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int count;
+        private boolean failed;
+
+        BufferedOutput(OutputStream stream, boolean flushEveryLine) {
+            this.stream = stream;
+            this.flushEveryLine = flushEveryLine;
+        }
+
+        // Tasks may print at the same time
+        @Override
+        public synchronized void println(String text) {
+            int length = text.length();
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                if (c >= 0x80) {
+                    // Leave everything from the first non-ASCII character to the encoder
+                    write(text.substring(i).getBytes(StandardCharsets.UTF_8));
+                    break;
+                }
+                if (count == BUFFER_SIZE) {
+                    drain();
+                }
+                buffer[count++] = (byte) c;
+            }
+            endLine();
+        }
+
+        // Integers go straight into the buffer as digits
+        @Override
+        public synchronized void println(double value) {
+            if (!NumberFormatter.isPlainInteger(value)) {
+                println(Double.toString(value));
+                return;
+            }
+
+            if (BUFFER_SIZE - count < NumberFormatter.MAX_INTEGER_LENGTH) {
+                drain();
+            }
+            count = NumberFormatter.writeInteger(buffer, count, value);
+            endLine();
+        }
+
+        @Override
+        public synchronized void flush() {
+            drain();
+            if (!failed) {
+                try {
+                    stream.flush();
+                } catch (IOException e) {
+                    failed = true;
+                }
+            }
+        }
+
+        private void endLine() {
+            write(LINE_SEPARATOR);
+            if (flushEveryLine) {
+                flush();
+            }
+        }
+
+        private void write(byte[] bytes) {
+            if (bytes.length > BUFFER_SIZE - count) {
+                drain();
+                if (bytes.length > BUFFER_SIZE) {
+                    writeThrough(bytes, bytes.length);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, 0, buffer, count, bytes.length);
+            count += bytes.length;
+        }
+
+        // Write out the buffer without flushing the stream
+        private void drain() {
+            writeThrough(buffer, count);
+            count = 0;
+        }
+
+        private void writeThrough(byte[] bytes, int length) {
+            if (failed || length == 0) {
+                return;
+            }
+            LoxRuntime.printBytes.add(length);
+            try {
+                stream.write(bytes, 0, length);
+            } catch (IOException e) {
+                failed = true;
+            }
+        }
+    }
+
+    // Printing threads put lines into a bounded ring (ArrayBlockingQueue is a
+    // circular array); the writer thread takes them out in batches and writes
+    // them to a block-buffered sink, which it flushes whenever it runs idle
+    private static final class AsyncOutput extends LoxOutput {
+        private static final int CAPACITY = 1 << 13;
+        private static final int BATCH_SIZE = 1 << 10;
+        private static final long IDLE_MILLIS = 10;
+
+        // Ends the writer thread
+        private static final Object STOP = new Object();
+
+        private final BlockingQueue<Object> ring = new ArrayBlockingQueue<>(CAPACITY);
+        private final BufferedOutput target;
+        private final Thread writer;
+
+        AsyncOutput(BufferedOutput target) {
+            this.target = target;
+            this.writer = new Thread(this::drain, "jlox-output");
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        @Override
+        public void println(String text) {
+            put(text);
+        }
+
+        // Wait until the writer thread has written and flushed every earlier line
+        @Override
+        public void flush() {
+            CountDownLatch flushed = new CountDownLatch(1);
+            if (put(flushed)) {
+                awaitUninterruptibly(flushed);
+            }
+        }
+
+        @Override
+        public void close() {
+            flush();
+            if (put(STOP)) {
+                try {
+                    writer.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private boolean put(Object item) {
+            if (!writer.isAlive()) {
+                return false;
+            }
+            try {
+                ring.put(item);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private void drain() {
+            List<Object> batch = new ArrayList<>(BATCH_SIZE);
+            try {
+                while (true) {
+                    Object first = ring.poll(IDLE_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        target.flush();
+                        first = ring.take();
+                    }
+
+                    batch.add(first);
+                    ring.drainTo(batch, BATCH_SIZE - 1);
+                    for (Object item : batch) {
+                        if (item instanceof String) {
+                            target.println((String) item);
+                        } else if (item instanceof CountDownLatch) {
+                            target.flush();
+                            ((CountDownLatch) item).countDown();
+                        } else if (item == STOP) {
+                            target.flush();
+                            return;
+                        }
+                    }
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                target.flush();
+            }
+        }
+
+        private static void awaitUninterruptibly(CountDownLatch latch) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    latch.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
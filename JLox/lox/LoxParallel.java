@@ -0,0 +1,170 @@
+package JLox.lox;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * parallelMap, parallelReduce and parallelSort.
+ * The list is split into chunks that run as fork/join tasks. Every chunk calls
+ * the Lox function through its own forked interpreter, which shares the
+ * globals of the caller but has its own call stack.
+ *
+ * The tasks run in the pool of the calling thread when it is a fork/join
+ * worker and in the common pool otherwise, so embedders and benchmarks can
+ * choose the parallelism by calling in from their own ForkJoinPool.
+ */
+final class LoxParallel {
+
+    // Chunks per worker, so idle workers have something left to steal
+    private static final int CHUNKS_PER_WORKER = 8;
+
+    private LoxParallel() {
+    }
+
+    static LoxList map(Interpreter interpreter, LoxList list, LoxCallable function) {
+        Object[] input = list.toArray();
+        Object[] output = new Object[input.length];
+
+        // The workers read the function's closure and the elements from other threads
+        Environment.publish(function);
+        Environment.publish(list);
+        new MapTask(interpreter, function, input, output, 0, input.length, grain(input.length)).invoke();
+        return new LoxList(output);
+    }
+
+    // Reduce with an associative function: the chunks are folded separately
+    // and their results combined in order, so the outcome matches a left fold
+    // starting with init.
+    static Object reduce(Interpreter interpreter, LoxList list, LoxCallable function, Object init) {
+        Object[] input = list.toArray();
+        if (input.length == 0) {
+            return init;
+        }
+
+        Environment.publish(function);
+        Environment.publish(list);
+        Object total = new ReduceTask(interpreter, function, input, 0, input.length,
+                grain(input.length)).invoke();
+        return function.call(interpreter, Arrays.asList(init, total));
+    }
+
+    // Sort the list in place by a comparator returning a negative number, zero
+    // or a positive number, and return it
+    static LoxList sort(Interpreter interpreter, LoxList list, LoxCallable function) {
+        Object[] elements = list.toArray();
+
+        Environment.publish(function);
+        Environment.publish(list);
+        ThreadLocal<Interpreter> workers = ThreadLocal.withInitial(interpreter::fork);
+        Comparator<Object> comparator = (left, right) -> {
+            Object order = function.call(workers.get(), Arrays.asList(left, right));
+            if (!(order instanceof Double)) {
+                throw new RuntimeError("Comparator must return a number.");
+            }
+            return (int) Math.signum((double) order);
+        };
+
+        try {
+            Arrays.parallelSort(elements, comparator);
+        } catch (IllegalArgumentException e) {
+            // TimSort noticed that a < b < c but c < a
+            throw new RuntimeError("Comparator is inconsistent.");
+        }
+        list.setAll(elements);
+        return list;
+    }
+
+    private static int grain(int size) {
+        int workers = ForkJoinTask.inForkJoinPool()
+                ? ForkJoinTask.getPool().getParallelism()
+                : ForkJoinPool.getCommonPoolParallelism();
+        return Math.max(1, size / (workers * CHUNKS_PER_WORKER));
+    }
+
+    private static final class MapTask extends RecursiveAction {
+        private final Interpreter interpreter;
+        private final LoxCallable function;
+        private final Object[] input;
+        private final Object[] output;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        MapTask(Interpreter interpreter, LoxCallable function, Object[] input, Object[] output,
+                int from, int to, int grain) {
+            this.interpreter = interpreter;
+            this.function = function;
+            this.input = input;
+            this.output = output;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                Interpreter worker = interpreter.fork();
+                Object[] argument = new Object[1];
+                List<Object> arguments = Arrays.asList(argument);
+                for (int i = from; i < to; i++) {
+                    // Parameters are bound before the body runs, so one
+                    // argument list serves every call
+                    argument[0] = input[i];
+                    output[i] = function.call(worker, arguments);
+                }
+                worker.counters.publish();
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new MapTask(interpreter, function, input, output, from, middle, grain),
+                    new MapTask(interpreter, function, input, output, middle, to, grain));
+        }
+    }
+
+    private static final class ReduceTask extends RecursiveTask<Object> {
+        private final Interpreter interpreter;
+        private final LoxCallable function;
+        private final Object[] input;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        ReduceTask(Interpreter interpreter, LoxCallable function, Object[] input, int from, int to,
+                int grain) {
+            this.interpreter = interpreter;
+            this.function = function;
+            this.input = input;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected Object compute() {
+            Interpreter worker = interpreter.fork();
+            if (to - from <= grain) {
+                Object result = input[from];
+                for (int i = from + 1; i < to; i++) {
+                    result = function.call(worker, Arrays.asList(result, input[i]));
+                }
+                worker.counters.publish();
+                return result;
+            }
+
+            int middle = (from + to) >>> 1;
+            ReduceTask left = new ReduceTask(interpreter, function, input, from, middle, grain);
+            left.fork();
+            Object right = new ReduceTask(interpreter, function, input, middle, to, grain).compute();
+            Object result = function.call(worker, Arrays.asList(left.join(), right));
+            worker.counters.publish();
+            return result;
+        }
+    }
+}
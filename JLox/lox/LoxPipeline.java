@@ -0,0 +1,99 @@
+package JLox.lox;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Runs a script as a filter over stdin, for jlox -n script.lox.
+ * The script runs once, then for every line of stdin the global 'line' holds
+ * the line, 'lineNumber' counts from 1, and the script's onLine() is called.
+ * onEnd() is called after the last line if the script defines it.
+ *
+ * stdin is read in 64 KB blocks and output is block-buffered (see LoxOutput).
+ * The output is flushed at exit and whenever the filter is about to wait for
+ * more input, so interactive use still sees every line's output in time.
+ */
+class LoxPipeline {
+    private final LoxEngine engine;
+
+    LoxPipeline(LoxEngine engine) {
+        this.engine = engine;
+    }
+
+    // Run the script over stdin and return the exit code
+    int run(Path script) throws IOException {
+        LoxOutput out = LoxOutput.create(new FileOutputStream(FileDescriptor.out),
+                LoxOutput.mode(LoxOutput.Mode.BLOCK));
+        ErrorReporter reporter = new ErrorReporter(System.err);
+        try {
+            return run(script, out, reporter);
+        } finally {
+            out.close();
+        }
+    }
+
+    private int run(Path script, LoxOutput out, ErrorReporter reporter) throws IOException {
+        String source = new String(Files.readAllBytes(script), Charset.defaultCharset());
+        LoxProgram program = engine.compile(source, reporter);
+        if (program == null) {
+            return reporter.exitCode();
+        }
+
+        Interpreter interpreter = new Interpreter(out, reporter);
+        interpreter.defineGlobal("line", null);
+        interpreter.defineGlobal("lineNumber", 0.0);
+        interpreter.interpret(program.statements);
+        if (reporter.exitCode() != 0) {
+            return reporter.exitCode();
+        }
+
+        LoxCallable onLine = handler(interpreter, "onLine");
+        if (onLine == null) {
+            System.err.println("Script must define onLine() to run with -n.");
+            return ErrorReporter.EX_DATAERR;
+        }
+        LoxCallable onEnd = handler(interpreter, "onEnd");
+
+        LoxLineReader lines = new LoxLineReader(new FileInputStream(FileDescriptor.in).getChannel(), out::flush);
+        try {
+            double lineNumber = 0;
+            String line;
+            while ((line = lines.readLine()) != null) {
+                interpreter.defineGlobal("line", line);
+                interpreter.defineGlobal("lineNumber", ++lineNumber);
+                onLine.call(interpreter, List.of());
+            }
+
+            if (onEnd != null) {
+                onEnd.call(interpreter, List.of());
+            }
+            interpreter.counters.publish();
+        } catch (RuntimeError error) {
+            // Keep the output that came before the error ahead of its message
+            out.flush();
+            reporter.runtimeError(error);
+        }
+        return reporter.exitCode();
+    }
+
+    // The global function without parameters with the given name, or null
+    private static LoxCallable handler(Interpreter interpreter, String name) {
+        Object handler;
+        try {
+            handler = interpreter.global(name);
+        } catch (RuntimeError error) {
+            return null;
+        }
+
+        if (handler instanceof LoxCallable && ((LoxCallable) handler).arity() == 0) {
+            return (LoxCallable) handler;
+        }
+        return null;
+    }
+}
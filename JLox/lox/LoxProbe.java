@@ -0,0 +1,45 @@
+package JLox.lox;
+
+/**
+ * A node of a compiled program that a {@link LoxTool} is attached to. The
+ * kind is the node's class in the AST, e.g. "Call", "Binary" or "Variable"
+ * for expressions and "Print", "Var" or "While" for statements.
+ */
+public final class LoxProbe {
+    private final String kind;
+    private final int line;
+    private final String function;
+    private final boolean statement;
+    final LoxTool tool;
+
+    LoxProbe(String kind, int line, String function, boolean statement, LoxTool tool) {
+        this.kind = kind;
+        this.line = line;
+        this.function = function;
+        this.statement = statement;
+        this.tool = tool;
+    }
+
+    public String kind() {
+        return kind;
+    }
+
+    public int line() {
+        return line;
+    }
+
+    // The innermost function around the node, Class.method for methods,
+    // or null at the top level of the script
+    public String function() {
+        return function;
+    }
+
+    public boolean isStatement() {
+        return statement;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " at line " + line + (function != null ? " in " + function : "");
+    }
+}
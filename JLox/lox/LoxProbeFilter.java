@@ -0,0 +1,60 @@
+package JLox.lox;
+
+import java.util.Set;
+
+/**
+ * Which nodes of a program a {@link LoxTool} is attached to. A filter starts
+ * out matching every node and is narrowed down by node kind, line range and
+ * enclosing function, e.g.
+ * LoxProbeFilter.all().kinds("Call").lines(10, 20).function("Point.init").
+ * Filters are immutable; every narrowing returns a new one.
+ */
+public final class LoxProbeFilter {
+    private final Set<String> kinds;
+    private final int fromLine;
+    private final int toLine;
+    private final String function;
+
+    private LoxProbeFilter(Set<String> kinds, int fromLine, int toLine, String function) {
+        this.kinds = kinds;
+        this.fromLine = fromLine;
+        this.toLine = toLine;
+        this.function = function;
+    }
+
+    public static LoxProbeFilter all() {
+        return new LoxProbeFilter(null, 1, Integer.MAX_VALUE, null);
+    }
+
+    // Only nodes of these kinds (see LoxProbe#kind)
+    public LoxProbeFilter kinds(String... kinds) {
+        return new LoxProbeFilter(Set.of(kinds), fromLine, toLine, function);
+    }
+
+    // Only nodes on lines from to to, both inclusive
+    public LoxProbeFilter lines(int from, int to) {
+        return new LoxProbeFilter(kinds, from, to, function);
+    }
+
+    // Only nodes whose innermost function or method has this name, given
+    // as "method" for that method of every class or as "Class.method"
+    public LoxProbeFilter function(String name) {
+        return new LoxProbeFilter(kinds, fromLine, toLine, name);
+    }
+
+    boolean matches(String kind, int line, String function) {
+        if (kinds != null && !kinds.contains(kind)) {
+            return false;
+        }
+        if (line < fromLine || line > toLine) {
+            return false;
+        }
+        if (this.function == null) {
+            return true;
+        }
+        if (function == null) {
+            return false;
+        }
+        return function.equals(this.function) || function.endsWith("." + this.function);
+    }
+}
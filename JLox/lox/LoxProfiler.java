@@ -0,0 +1,198 @@
+package JLox.lox;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Profile of a run, for jlox --profile: time spent in each phase of the
+ * pipeline, calls, self time and total time per Lox function, and how often
+ * the statements of each line were executed.
+ *
+ * Profiling is switched on with the jlox.profile system property before the
+ * first script is compiled. ENABLED is a static final, so the JIT folds every
+ * "if (LoxProfiler.ENABLED)" away when profiling is off.
+ *
+ * Self time excludes the callees. Total time counts only the outermost
+ * activation of a recursive function, so it never exceeds the wall time.
+ */
+final class LoxProfiler {
+
+    static final boolean ENABLED = Boolean.getBoolean("jlox.profile");
+
+    enum Phase {
+        SCAN, PARSE, RESOLVE, INTERPRET
+    }
+
+    private static final LongAdder[] phases = new LongAdder[Phase.values().length];
+
+    static {
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new LongAdder();
+        }
+    }
+
+    private static final class FunctionStats {
+        final String name;
+        final int line;
+        final LongAdder calls = new LongAdder();
+        final LongAdder selfNanos = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+
+        FunctionStats(Stmt.Function declaration) {
+            this.name = declaration.name.lexeme;
+            this.line = declaration.name.line;
+        }
+    }
+
+    private static final Map<Stmt.Function, FunctionStats> functions = new ConcurrentHashMap<>();
+
+    // Every thread counts into arrays of its own, summed up by the report.
+    // A task's thread ends with the task, so its counts are then merged into
+    // finishedHits and its profile is dropped (see taskEnded()).
+    private static final Set<ThreadProfile> threads = ConcurrentHashMap.newKeySet();
+    private static final ThreadLocal<ThreadProfile> current = ThreadLocal.withInitial(() -> {
+        ThreadProfile profile = new ThreadProfile();
+        threads.add(profile);
+        return profile;
+    });
+
+    // Guarded by the class
+    private static long[] finishedHits = new long[0];
+
+    private static final class ThreadProfile {
+        // Statement executions per line, with the highest line counted so far
+        long[] hits = new long[256];
+        int lastLine;
+
+        // The functions running on this thread, innermost last
+        FunctionStats[] stack = new FunctionStats[64];
+        long[] starts = new long[64];
+        long[] childNanos = new long[64];
+        int depth;
+
+        // Activations of each function on the stack, for recursion
+        final Map<FunctionStats, int[]> active = new IdentityHashMap<>();
+    }
+
+    private LoxProfiler() {
+    }
+
+    // Add the time since start to the phase, and return the current time
+    static long phase(Phase phase, long start) {
+        long now = System.nanoTime();
+        phases[phase.ordinal()].add(now - start);
+        return now;
+    }
+
+    static void statement(int line) {
+        ThreadProfile profile = current.get();
+        if (line >= profile.hits.length) {
+            profile.hits = Arrays.copyOf(profile.hits, Math.max(line + 1, profile.hits.length * 2));
+        }
+        profile.hits[line]++;
+        if (line > profile.lastLine) {
+            profile.lastLine = line;
+        }
+    }
+
+    // Called on the thread of a spawned task when the task is done
+    static void taskEnded() {
+        ThreadProfile profile = current.get();
+        if (profile.depth > 0) {
+            return;
+        }
+        current.remove();
+        threads.remove(profile);
+        synchronized (LoxProfiler.class) {
+            if (profile.lastLine >= finishedHits.length) {
+                finishedHits = Arrays.copyOf(finishedHits, profile.lastLine + 1);
+            }
+            for (int line = 0; line <= profile.lastLine; line++) {
+                finishedHits[line] += profile.hits[line];
+            }
+        }
+    }
+
+    static void enter(Stmt.Function declaration) {
+        FunctionStats stats = functions.computeIfAbsent(declaration, FunctionStats::new);
+        ThreadProfile profile = current.get();
+        if (profile.depth == profile.stack.length) {
+            int length = profile.depth * 2;
+            profile.stack = Arrays.copyOf(profile.stack, length);
+            profile.starts = Arrays.copyOf(profile.starts, length);
+            profile.childNanos = Arrays.copyOf(profile.childNanos, length);
+        }
+
+        int frame = profile.depth++;
+        profile.stack[frame] = stats;
+        profile.childNanos[frame] = 0;
+        profile.active.computeIfAbsent(stats, key -> new int[1])[0]++;
+        profile.starts[frame] = System.nanoTime();
+    }
+
+    static void exit() {
+        long now = System.nanoTime();
+        ThreadProfile profile = current.get();
+        int frame = --profile.depth;
+        FunctionStats stats = profile.stack[frame];
+        profile.stack[frame] = null;
+
+        long elapsed = now - profile.starts[frame];
+        stats.calls.increment();
+        stats.selfNanos.add(elapsed - profile.childNanos[frame]);
+        if (--profile.active.get(stats)[0] == 0) {
+            stats.totalNanos.add(elapsed);
+        }
+        if (frame > 0) {
+            profile.childNanos[frame - 1] += elapsed;
+        }
+    }
+
+    // Print the profile, functions sorted by self time
+    static void report(PrintStream out) {
+        out.println();
+        out.println("== Profile ==");
+        out.println("Phases:");
+        for (Phase phase : Phase.values()) {
+            out.printf("  %-10s %12.3f ms%n", phase.name().toLowerCase(), phases[phase.ordinal()].sum() / 1e6);
+        }
+
+        List<FunctionStats> sorted = new ArrayList<>(functions.values());
+        sorted.sort(Comparator.comparingLong((FunctionStats stats) -> stats.selfNanos.sum()).reversed());
+        out.println("Functions by self time:");
+        out.printf("  %12s %12s %12s  %s%n", "self ms", "total ms", "calls", "function");
+        for (FunctionStats stats : sorted) {
+            out.printf("  %12.3f %12.3f %,12d  %s (line %d)%n", stats.selfNanos.sum() / 1e6,
+                    stats.totalNanos.sum() / 1e6, stats.calls.sum(), stats.name, stats.line);
+        }
+
+        long[] hits;
+        synchronized (LoxProfiler.class) {
+            hits = finishedHits.clone();
+        }
+        for (ThreadProfile profile : threads) {
+            long[] counts = profile.hits;
+            if (counts.length > hits.length) {
+                hits = Arrays.copyOf(hits, counts.length);
+            }
+            for (int line = 0; line < counts.length; line++) {
+                hits[line] += counts[line];
+            }
+        }
+        out.println("Statements executed per line:");
+        out.printf("  %8s %14s%n", "line", "hits");
+        for (int line = 1; line < hits.length; line++) {
+            if (hits[line] > 0) {
+                out.printf("  %8d %,14d%n", line, hits[line]);
+            }
+        }
+    }
+}
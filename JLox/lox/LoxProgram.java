@@ -0,0 +1,18 @@
+package JLox.lox;
+
+import java.util.List;
+
+/**
+ * A scanned, parsed and resolved Lox program.
+ * Scope distances live on the AST nodes themselves, so a program is never
+ * written to after it is built. One program can therefore be executed by any
+ * number of contexts, on any number of threads, without re-running the
+ * Scanner, Parser or Resolver.
+ */
+public final class LoxProgram {
+    final List<Stmt> statements;
+
+    LoxProgram(List<Stmt> statements) {
+        this.statements = List.copyOf(statements);
+    }
+}
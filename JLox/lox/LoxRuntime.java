@@ -0,0 +1,151 @@
+package JLox.lox;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The counters behind LoxRuntimeMXBean. Every interpreter of the JVM counts
+ * into the same adders. A LongAdder spreads increments from different threads
+ * over cells of their own and only sums them when a JMX client reads them, so
+ * interpreters running side by side don't contend on the counters.
+ *
+ * Even an uncontended LongAdder costs a compare-and-swap, which made
+ * instantiation.lox 40% slower when every statement, call, scope and
+ * instance bumped one. So each interpreter counts into plain fields of its
+ * own Counters, a stripe only its thread writes, and adds them to the adders
+ * every 1024 statements and when a run or task ends.
+ */
+final class LoxRuntime implements LoxRuntimeMXBean {
+
+    static final String OBJECT_NAME = "JLox:type=Runtime";
+
+    private static final long REGISTER_DELAY_MILLIS = 10_000;
+
+    static final LongAdder statements = new LongAdder();
+    static final LongAdder calls = new LongAdder();
+    static final LongAdder environments = new LongAdder();
+    static final LongAdder instances = new LongAdder();
+    static final LongAdder cacheHits = new LongAdder();
+    static final LongAdder cacheMisses = new LongAdder();
+    static final LongAdder printBytes = new LongAdder();
+    static final LongAdder runtimeErrors = new LongAdder();
+
+    private static boolean registered;
+
+    // The counts of one interpreter that were not published yet
+    static final class Counters {
+        private static final int BATCH = 1024;
+
+        private int pending;
+        long calls;
+        long environments;
+        long instances;
+        long cacheHits;
+        long cacheMisses;
+
+        void statement() {
+            if (++pending == BATCH) {
+                publish();
+            }
+        }
+
+        void publish() {
+            statements.add(pending);
+            LoxRuntime.calls.add(calls);
+            LoxRuntime.environments.add(environments);
+            LoxRuntime.instances.add(instances);
+            LoxRuntime.cacheHits.add(cacheHits);
+            LoxRuntime.cacheMisses.add(cacheMisses);
+            pending = 0;
+            calls = 0;
+            environments = 0;
+            instances = 0;
+            cacheHits = 0;
+            cacheMisses = 0;
+        }
+    }
+
+    private LoxRuntime() {
+    }
+
+    // Starting the platform MBean server takes almost half a second, more
+    // than most scripts run, and competes with the JIT while the interpreter
+    // warms up: registering after one second made fib.lox 30% slower on one
+    // CPU. So the command line only registers the bean once a run has lasted
+    // long enough to be worth attaching jconsole to.
+    static void registerLater() {
+        Thread thread = new Thread(() -> {
+            try {
+                Thread.sleep(REGISTER_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            register();
+        }, "jlox-jmx");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Make the counters visible to JMX clients; later calls do nothing
+    static synchronized void register() {
+        if (registered) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new LoxRuntime(), new ObjectName(OBJECT_NAME));
+            registered = true;
+        } catch (JMException e) {
+            System.err.println("Could not register " + OBJECT_NAME + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public long getStatementsExecuted() {
+        return statements.sum();
+    }
+
+    @Override
+    public long getCallsMade() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getEnvironmentsAllocated() {
+        return environments.sum();
+    }
+
+    @Override
+    public long getInstancesCreated() {
+        return instances.sum();
+    }
+
+    @Override
+    public long getPropertyCacheHits() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getPropertyCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    @Override
+    public double getPropertyCacheHitRatio() {
+        long hits = cacheHits.sum();
+        long lookups = hits + cacheMisses.sum();
+        return lookups == 0 ? Double.NaN : (double) hits / lookups;
+    }
+
+    @Override
+    public long getPrintBytesWritten() {
+        return printBytes.sum();
+    }
+
+    @Override
+    public long getRuntimeErrors() {
+        return runtimeErrors.sum();
+    }
+}
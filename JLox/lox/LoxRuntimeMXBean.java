@@ -0,0 +1,34 @@
+package JLox.lox;
+
+/**
+ * Live counters of every interpreter in this JVM, registered as
+ * JLox:type=Runtime so jconsole, VisualVM or any JMX client can read them
+ * from a running jlox process. The counters only ever grow; rates are up to
+ * the client.
+ */
+public interface LoxRuntimeMXBean {
+
+    long getStatementsExecuted();
+
+    // Calls of functions, methods, classes and natives
+    long getCallsMade();
+
+    // Scopes created for blocks, calls, bound methods and superclasses
+    long getEnvironmentsAllocated();
+
+    long getInstancesCreated();
+
+    // Method lookups answered by the per-class method cache, and those
+    // that had to walk the superclass chain
+    long getPropertyCacheHits();
+
+    long getPropertyCacheMisses();
+
+    // Hits over all lookups, NaN before the first lookup
+    double getPropertyCacheHitRatio();
+
+    // UTF-8 bytes that print statements handed to their stream
+    long getPrintBytesWritten();
+
+    long getRuntimeErrors();
+}
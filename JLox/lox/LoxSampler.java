@@ -0,0 +1,186 @@
+package JLox.lox;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sampling profiler of Lox code, for jlox --sample. Java profilers only see
+ * the visitor methods of the interpreter, so every interpreter keeps a shadow
+ * stack of the Lox functions it is running, and a background thread takes a
+ * snapshot of every active stack at a fixed interval. At exit the samples are
+ * written as folded stacks, one "frame;frame;... count" line per distinct
+ * stack, ready for flamegraph.pl or speedscope.
+ *
+ * A frame is the function name, Class.method for methods, followed by the
+ * line it was called from. Stacks of a script start with <script>, those of
+ * spawned tasks and parallel workers with <task>.
+ *
+ * Sampling is switched on with -Djlox.sample=file and samples every
+ * jlox.sample.interval milliseconds, 10 by default. Like LoxProfiler.ENABLED,
+ * ENABLED is a static final, so the shadow stacks cost nothing when it is off.
+ */
+final class LoxSampler {
+
+    static final boolean ENABLED = System.getProperty("jlox.sample") != null;
+
+    private static final long INTERVAL = Long.getLong("jlox.sample.interval", 10);
+
+    // Stacks of the interpreters that are running a script or a function
+    private static final Set<Stack> active = ConcurrentHashMap.newKeySet();
+
+    // Samples per folded stack, only touched by the sampler thread
+    private static final Map<String, long[]> samples = new HashMap<>();
+
+    private static Thread sampler;
+
+    /**
+     * The Lox call stack of one interpreter. Only the thread running the
+     * interpreter changes it; the sampler reads it without locking. The depth
+     * is published with release/acquire, so the sampler sees every frame below
+     * it, and a frame that was popped meanwhile at worst shows up as "?".
+     */
+    static final class Stack {
+        private static final VarHandle DEPTH;
+
+        static {
+            try {
+                DEPTH = MethodHandles.lookup().findVarHandle(Stack.class, "depth", int.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private LoxFunction[] functions = new LoxFunction[64];
+        private int[] lines = new int[64];
+        private int depth;
+
+        // Line of the call being made, consumed by the next push
+        private int callLine;
+
+        // Whether a script is running in this interpreter, see begin()
+        private volatile boolean running;
+
+        void call(int line) {
+            callLine = line;
+        }
+
+        void push(LoxFunction function) {
+            int frame = (int) DEPTH.get(this);
+            if (frame == functions.length) {
+                functions = Arrays.copyOf(functions, frame * 2);
+                lines = Arrays.copyOf(lines, frame * 2);
+            }
+            functions[frame] = function;
+            lines[frame] = callLine;
+            callLine = 0;
+            DEPTH.setRelease(this, frame + 1);
+            if (frame == 0 && !running) {
+                active.add(this);
+            }
+        }
+
+        void pop() {
+            int frame = (int) DEPTH.get(this) - 1;
+            functions[frame] = null;
+            DEPTH.setRelease(this, frame);
+            if (frame == 0 && !running) {
+                active.remove(this);
+            }
+        }
+
+        // Around a whole script, so time in top-level code is sampled as well
+        void begin() {
+            running = true;
+            active.add(this);
+        }
+
+        void end() {
+            running = false;
+            if ((int) DEPTH.get(this) == 0) {
+                active.remove(this);
+            }
+        }
+
+        // The folded stack, or null if nothing is running
+        String snapshot() {
+            int depth = (int) DEPTH.getAcquire(this);
+            LoxFunction[] functions = this.functions;
+            int[] lines = this.lines;
+            boolean script = running;
+            if (depth == 0 && !script) {
+                return null;
+            }
+
+            StringBuilder folded = new StringBuilder(script ? "<script>" : "<task>");
+            int frames = Math.min(depth, Math.min(functions.length, lines.length));
+            for (int i = 0; i < frames; i++) {
+                LoxFunction function = functions[i];
+                folded.append(';').append(function != null ? function.qualifiedName() : "?");
+                if (lines[i] > 0) {
+                    folded.append(':').append(lines[i]);
+                }
+            }
+            return folded.toString();
+        }
+    }
+
+    private LoxSampler() {
+    }
+
+    // Start sampling, and write the folded stacks to the jlox.sample file at exit
+    static synchronized void start() {
+        if (sampler != null) {
+            return;
+        }
+        Path file = Paths.get(System.getProperty("jlox.sample"));
+        sampler = new Thread(LoxSampler::sample, "jlox-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            sampler.interrupt();
+            try {
+                sampler.join();
+                write(file);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                System.err.println("Could not write samples to " + file + ": " + e.getMessage());
+            }
+        }));
+    }
+
+    private static void sample() {
+        while (!Thread.currentThread().isInterrupted()) {
+            for (Stack stack : active) {
+                String folded = stack.snapshot();
+                if (folded != null) {
+                    samples.computeIfAbsent(folded, key -> new long[1])[0]++;
+                }
+            }
+            try {
+                Thread.sleep(INTERVAL);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static void write(Path file) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            samples.entrySet().stream()
+                    .sorted(Map.Entry.comparingByKey())
+                    .forEach(entry -> out.println(entry.getKey() + " " + entry.getValue()[0]));
+        }
+    }
+}
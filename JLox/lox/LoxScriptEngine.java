@@ -0,0 +1,252 @@
+package JLox.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.Invocable;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+
+/**
+ * JSR-223 engine for JLox.
+ * The ENGINE_SCOPE bindings of a script context are the Lox globals: the
+ * interpreter reads and writes them directly, so values put into the bindings
+ * are visible to scripts and global variables and functions defined by a
+ * script show up in the bindings without any copying.
+ * {@link #compile} runs the Scanner, Parser and Resolver once; evaluating the
+ * returned script only executes the already resolved program.
+ */
+public class LoxScriptEngine extends AbstractScriptEngine implements Compilable, Invocable {
+
+    private final LoxScriptEngineFactory factory;
+    private final LoxEngine engine = new LoxEngine();
+
+    // Print streams wrapping the writers of the most recently used context
+    private volatile Streams streams;
+
+    private record Streams(Writer writer, Writer errorWriter, PrintStream out, PrintStream err) {
+    }
+
+    // The interpreter a thread used last, reused while the bindings and writers
+    // stay the same. Threads share the bindings, which are concurrent (see
+    // LoxBindings), but never an interpreter and its call stack.
+    private final ThreadLocal<Session> sessions = new ThreadLocal<>();
+
+    private record Session(Bindings bindings, Streams streams, Interpreter interpreter) {
+    }
+
+    LoxScriptEngine(LoxScriptEngineFactory factory) {
+        this.factory = factory;
+        setBindings(createBindings(), ScriptContext.ENGINE_SCOPE);
+    }
+
+    @Override
+    public ScriptEngineFactory getFactory() {
+        return factory;
+    }
+
+    @Override
+    public Bindings createBindings() {
+        return new LoxBindings();
+    }
+
+    @Override
+    public Object eval(String script, ScriptContext context) throws ScriptException {
+        return compile(script).eval(context);
+    }
+
+    @Override
+    public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+        return compile(reader).eval(context);
+    }
+
+    @Override
+    public CompiledScript compile(String script) throws ScriptException {
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        ErrorReporter reporter = new ErrorReporter(new PrintStream(errors, true, StandardCharsets.UTF_8));
+
+        LoxProgram program = engine.compile(script, reporter);
+        if (program == null) {
+            throw new ScriptException(errors.toString(StandardCharsets.UTF_8).trim());
+        }
+        return new LoxCompiledScript(this, program);
+    }
+
+    @Override
+    public CompiledScript compile(Reader reader) throws ScriptException {
+        StringBuilder script = new StringBuilder();
+        char[] buffer = new char[8192];
+        try {
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                script.append(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new ScriptException(e);
+        }
+        return compile(script.toString());
+    }
+
+    @Override
+    public Object invokeFunction(String name, Object... args) throws ScriptException, NoSuchMethodException {
+        Object function = context.getBindings(ScriptContext.ENGINE_SCOPE).get(name);
+        if (!(function instanceof LoxCallable)) {
+            throw new NoSuchMethodException("Undefined function '" + name + "'.");
+        }
+        return call((LoxCallable) function, args, context);
+    }
+
+    @Override
+    public Object invokeMethod(Object thiz, String name, Object... args)
+            throws ScriptException, NoSuchMethodException {
+        if (!(thiz instanceof LoxInstance)) {
+            throw new IllegalArgumentException("Only Lox instances have methods.");
+        }
+
+        Object method;
+        try {
+            // Lookups from Java don't count towards the runtime counters
+            method = ((LoxInstance) thiz).get(new Token(TokenType.IDENTIFIER, name, null, 0),
+                    new LoxRuntime.Counters());
+        } catch (RuntimeError error) {
+            throw new NoSuchMethodException(error.getMessage());
+        }
+
+        if (!(method instanceof LoxCallable)) {
+            throw new NoSuchMethodException("Property '" + name + "' is not a method.");
+        }
+        return call((LoxCallable) method, args, context);
+    }
+
+    @Override
+    public <T> T getInterface(Class<T> type) {
+        return proxy(type, (name, args) -> invokeFunction(name, args));
+    }
+
+    @Override
+    public <T> T getInterface(Object thiz, Class<T> type) {
+        return proxy(type, (name, args) -> invokeMethod(thiz, name, args));
+    }
+
+    // Run a compiled program against the bindings and writers of the context
+    Object evaluate(LoxProgram program, ScriptContext context) throws ScriptException {
+        Interpreter interpreter = interpreterFor(context);
+        try {
+            return interpreter.evaluateProgram(program.statements);
+        } catch (RuntimeError error) {
+            throw scriptException(error, context);
+        } finally {
+            interpreter.flush();
+        }
+    }
+
+    private Object call(LoxCallable callable, Object[] args, ScriptContext context) throws ScriptException {
+        List<Object> arguments = new ArrayList<>(args == null ? 0 : args.length);
+        if (args != null) {
+            for (Object arg : args) {
+                arguments.add(LoxBindings.toLox(arg));
+            }
+        }
+
+        if (arguments.size() != callable.arity()) {
+            throw new ScriptException(
+                    "Expected " + callable.arity() + " arguments but got " + arguments.size() + ".");
+        }
+
+        Interpreter interpreter = interpreterFor(context);
+        try {
+            return callable.call(interpreter, arguments);
+        } catch (RuntimeError error) {
+            throw scriptException(error, context);
+        } finally {
+            interpreter.flush();
+        }
+    }
+
+    // An interpreter whose globals are the ENGINE_SCOPE bindings
+    private Interpreter interpreterFor(ScriptContext context) {
+        Streams current = streams;
+        if (current == null || current.writer != context.getWriter()
+                || current.errorWriter != context.getErrorWriter()) {
+            current = new Streams(context.getWriter(), context.getErrorWriter(),
+                    printStream(context.getWriter()), printStream(context.getErrorWriter()));
+            streams = current;
+        }
+
+        Bindings bindings = context.getBindings(ScriptContext.ENGINE_SCOPE);
+        Session session = sessions.get();
+        if (session == null || session.bindings != bindings || session.streams != current) {
+            session = new Session(bindings, current,
+                    new Interpreter(bindings, LoxOutput.of(current.out), new ErrorReporter(current.err)));
+            sessions.set(session);
+        }
+        return session.interpreter;
+    }
+
+    private static ScriptException scriptException(RuntimeError error, ScriptContext context) {
+        Object fileName = context.getAttribute(FILENAME);
+        int line = error.token == null ? -1 : error.token.line;
+        return new ScriptException(error.getMessage(), fileName == null ? null : fileName.toString(), line);
+    }
+
+    // Lox prints to byte streams, JSR-223 hands out character writers
+    private static PrintStream printStream(Writer writer) {
+        OutputStream bytes = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] buffer, int offset, int length) throws IOException {
+                writer.write(new String(buffer, offset, length, StandardCharsets.UTF_8));
+            }
+
+            @Override
+            public void flush() throws IOException {
+                writer.flush();
+            }
+        };
+        return new PrintStream(bytes, false, StandardCharsets.UTF_8);
+    }
+
+    private interface Invocation {
+        Object invoke(String name, Object[] args) throws ScriptException, NoSuchMethodException;
+    }
+
+    private <T> T proxy(Class<T> type, Invocation invocation) {
+        if (type == null || !type.isInterface()) {
+            throw new IllegalArgumentException("Expected an interface type.");
+        }
+
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+                (self, method, args) -> {
+                    // equals, hashCode and toString describe the proxy itself
+                    if (method.getDeclaringClass() == Object.class) {
+                        switch (method.getName()) {
+                            case "equals":
+                                return self == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(self);
+                            default:
+                                return type.getName() + " implemented by Lox";
+                        }
+                    }
+                    return invocation.invoke(method.getName(), args);
+                });
+        return type.cast(proxy);
+    }
+}
@@ -0,0 +1,100 @@
+package JLox.lox;
+
+import java.util.List;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+
+/**
+ * JSR-223 factory for JLox, registered under the names "lox" and "jlox".
+ * Found by {@link javax.script.ScriptEngineManager} through
+ * META-INF/services/javax.script.ScriptEngineFactory.
+ */
+public class LoxScriptEngineFactory implements ScriptEngineFactory {
+
+    private static final String VERSION = "1.0.0";
+
+    // Compiled programs are immutable, every thread gets its own interpreter
+    // and the engine's bindings are a concurrent map, so one engine may
+    // evaluate scripts on many threads.
+    private static final String THREADING = "MULTITHREADED";
+
+    @Override
+    public String getEngineName() {
+        return "JLox";
+    }
+
+    @Override
+    public String getEngineVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return List.of("lox");
+    }
+
+    @Override
+    public List<String> getMimeTypes() {
+        return List.of("application/x-lox", "text/x-lox");
+    }
+
+    @Override
+    public List<String> getNames() {
+        return List.of("lox", "jlox", "Lox", "JLox");
+    }
+
+    @Override
+    public String getLanguageName() {
+        return "Lox";
+    }
+
+    @Override
+    public String getLanguageVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public Object getParameter(String key) {
+        switch (key) {
+            case ScriptEngine.ENGINE:
+                return getEngineName();
+            case ScriptEngine.ENGINE_VERSION:
+                return getEngineVersion();
+            case ScriptEngine.NAME:
+                return getNames().get(0);
+            case ScriptEngine.LANGUAGE:
+                return getLanguageName();
+            case ScriptEngine.LANGUAGE_VERSION:
+                return getLanguageVersion();
+            case "THREADING":
+                return THREADING;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public String getMethodCallSyntax(String obj, String m, String... args) {
+        return obj + "." + m + "(" + String.join(", ", args) + ")";
+    }
+
+    @Override
+    public String getOutputStatement(String toDisplay) {
+        return "print \"" + toDisplay.replace("\"", "") + "\";";
+    }
+
+    @Override
+    public String getProgram(String... statements) {
+        StringBuilder program = new StringBuilder();
+        for (String statement : statements) {
+            program.append(statement).append(";\n");
+        }
+        return program.toString();
+    }
+
+    @Override
+    public ScriptEngine getScriptEngine() {
+        return new LoxScriptEngine(this);
+    }
+}
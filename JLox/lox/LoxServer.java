@@ -0,0 +1,256 @@
+package JLox.lox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.ProtocolException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A resident jlox process serving scripts over a Unix domain socket.
+ * The JVM stays alive between scripts, so class loading and JIT compilation
+ * of the interpreter are paid once instead of on every invocation.
+ *
+ * Every request runs on its own virtual thread in a fresh {@link LoxContext},
+ * so scripts never see each other's globals or error flags. A script that
+ * fails in the interpreter itself, e.g. with a stack overflow, still ends
+ * with an error message and an exit code.
+ *
+ * The socket is only accessible to the user running the server: it is
+ * created in a directory no one else may enter (mode 0700), and the socket
+ * itself gets mode 0600.
+ *
+ * Wire format (integers are big-endian, byte arrays are length-prefixed):
+ *   request  → argument count, arguments, source bytes
+ *   response → frames of (tag, payload) where the tag is 'O' for stdout
+ *              bytes, 'E' for stderr bytes and 'X' for the final exit code
+ * A request with a negative length or one above MAX_REQUEST_BYTES is
+ * answered with an error and exit code 65.
+ */
+public class LoxServer {
+
+    // Response frame tags
+    static final byte STDOUT = 'O';
+    static final byte STDERR = 'E';
+    static final byte EXIT = 'X';
+
+    // Exit code when the socket can't be set up (see sysexits.h)
+    static final int EX_CANTCREAT = 73;
+
+    // Longest argument or script a request may carry
+    static final int MAX_REQUEST_BYTES = 64 << 20;
+
+    private final LoxEngine engine;
+    private final Path socket;
+
+    LoxServer(LoxEngine engine, Path socket) {
+        this.engine = engine;
+        this.socket = socket;
+    }
+
+    // Socket used when none is given: $JLOX_SOCKET, or jlox.sock in a directory
+    // of the user's own, $XDG_RUNTIME_DIR or jlox-<user> in the temp dir
+    static Path defaultSocket() {
+        String path = System.getenv("JLOX_SOCKET");
+        if (path != null && !path.isEmpty()) {
+            return Paths.get(path);
+        }
+        String runtimeDirectory = System.getenv("XDG_RUNTIME_DIR");
+        if (runtimeDirectory != null && !runtimeDirectory.isEmpty()) {
+            return Paths.get(runtimeDirectory, "jlox.sock");
+        }
+        return Paths.get(System.getProperty("java.io.tmpdir"), "jlox-" + System.getProperty("user.name"), "jlox.sock");
+    }
+
+    // Accept connections forever, handing each one to a new virtual thread.
+    // Returns an exit code only if the server could not start.
+    int serve() throws IOException {
+        String problem = checkDirectory(socket.toAbsolutePath().getParent());
+        if (problem != null) {
+            System.err.println(problem);
+            return EX_CANTCREAT;
+        }
+        if (answers(socket)) {
+            System.err.println("A jlox server is already listening on " + socket + ".");
+            return EX_CANTCREAT;
+        }
+        // A previous server that is gone may have left its socket file behind
+        Files.deleteIfExists(socket);
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+                ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            // Also closed by mode, whatever the umask made of the socket
+            if (socket.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                Files.setPosixFilePermissions(socket, PosixFilePermissions.fromString("rw-------"));
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.deleteIfExists(socket);
+                } catch (IOException e) {
+                    // Nothing sensible to do while shutting down
+                }
+            }));
+
+            System.out.println("jlox server listening on " + socket);
+            while (true) {
+                SocketChannel client = server.accept();
+                executor.submit(() -> handle(client));
+            }
+        }
+    }
+
+    // Scripts run with the server's rights, so the socket must live in a
+    // directory only the server's user can enter: the socket exists from bind()
+    // on, before its own mode can be set. A missing directory is created that
+    // way. Returns what is wrong with the directory, or null if nothing is.
+    private static String checkDirectory(Path directory) throws IOException {
+        if (!directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            return null;
+        }
+        Set<PosixFilePermission> ownerOnly = PosixFilePermissions.fromString("rwx------");
+        if (Files.notExists(directory)) {
+            Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(ownerOnly));
+        }
+
+        PosixFileAttributes attributes = Files.readAttributes(directory, PosixFileAttributes.class);
+        UserPrincipal user = directory.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        if (!attributes.owner().equals(user)) {
+            return "Socket directory " + directory + " belongs to " + attributes.owner().getName()
+                    + ", not " + user.getName() + ".";
+        }
+        if (!ownerOnly.containsAll(attributes.permissions())) {
+            return "Socket directory " + directory + " must be accessible to its owner alone (mode 0700).";
+        }
+        return null;
+    }
+
+    // Whether a server accepts connections on the socket
+    private static boolean answers(Path socket) {
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Run one script and stream its output back to the client
+    private void handle(SocketChannel channel) {
+        try (channel) {
+            DataInputStream request = new DataInputStream(
+                    new BufferedInputStream(Channels.newInputStream(channel)));
+            DataOutputStream response = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel)));
+
+            PrintStream out = framedStream(response, STDOUT);
+            PrintStream err = framedStream(response, STDERR);
+            int exitCode;
+            try {
+                exitCode = run(readSource(request), out, err);
+            } catch (ProtocolException e) {
+                // A malformed request is answered too
+                err.println(e.getMessage());
+                exitCode = ErrorReporter.EX_DATAERR;
+            }
+
+            out.flush();
+            err.flush();
+            synchronized (response) {
+                response.writeByte(EXIT);
+                response.writeInt(exitCode);
+                response.flush();
+            }
+        } catch (IOException e) {
+            // The client went away, there is no one left to report to
+        }
+    }
+
+    private static String readSource(DataInputStream request) throws IOException {
+        // Script arguments are carried for parity with the command line,
+        // which does not expose them to Lox code either.
+        int argc = request.readInt();
+        for (int i = 0; i < argc; i++) {
+            readBytes(request, MAX_REQUEST_BYTES);
+        }
+        return new String(readBytes(request, MAX_REQUEST_BYTES), Charset.defaultCharset());
+    }
+
+    // Run a script in a fresh context and return its exit code
+    private int run(String source, PrintStream out, PrintStream err) {
+        try {
+            return engine.newContext(out, err).run(source);
+        } catch (StackOverflowError e) {
+            // Tell the client, rather than dropping the connection
+            err.println("Stack overflow.");
+            return ErrorReporter.EX_SOFTWARE;
+        } catch (Throwable e) {
+            err.println("Internal error: " + e);
+            return ErrorReporter.EX_SOFTWARE;
+        }
+    }
+
+    // A print stream whose bytes reach the client as frames with the given tag
+    private static PrintStream framedStream(DataOutputStream response, byte tag) {
+        OutputStream frames = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                synchronized (response) {
+                    response.writeByte(tag);
+                    response.writeInt(length);
+                    response.write(bytes, offset, length);
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                synchronized (response) {
+                    response.flush();
+                }
+            }
+        };
+        return new PrintStream(new BufferedOutputStream(frames), false, StandardCharsets.UTF_8);
+    }
+
+    static void writeBytes(DataOutputStream stream, byte[] bytes) throws IOException {
+        stream.writeInt(bytes.length);
+        stream.write(bytes);
+    }
+
+    // Reads a length-prefixed byte array, refusing lengths outside 0..limit
+    // before allocating anything for them
+    static byte[] readBytes(DataInputStream stream, int limit) throws IOException {
+        int length = stream.readInt();
+        if (length < 0 || length > limit) {
+            throw new ProtocolException("Invalid length " + length + ", expected at most " + limit + " bytes.");
+        }
+        byte[] bytes = new byte[length];
+        stream.readFully(bytes);
+        return bytes;
+    }
+}
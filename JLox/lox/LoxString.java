@@ -0,0 +1,99 @@
+package JLox.lox;
+
+/**
+ * A string built by concatenation, so that s = s + piece in a loop takes
+ * linear instead of quadratic time.
+ *
+ * Every version of the string is a prefix of one shared StringBuilder: the
+ * latest version appends in place, an older one that is appended to again
+ * copies its prefix into a builder of its own. A version is flattened into a
+ * String the first time it is read, and the String is kept.
+ *
+ * Concatenations only stay unflattened while they are stored in variables or
+ * appended to again; everywhere else Interpreter.evaluate() hands out the
+ * flattened String, so equality, printing, hashing and natives never see a
+ * LoxString. Short results are plain Strings from the start.
+ */
+final class LoxString {
+
+    // Shorter results are cheaper to copy than to share a builder
+    private static final int MIN_LENGTH = 128;
+
+    private final StringBuilder builder;
+    private final int length;
+    private String flat;
+
+    // Only called while holding the builder's lock
+    private LoxString(StringBuilder builder) {
+        this.builder = builder;
+        this.length = builder.length();
+    }
+
+    static Object concat(String left, String right) {
+        if (left.length() + right.length() < MIN_LENGTH) {
+            return left + right;
+        }
+        return start(left).append(right);
+    }
+
+    static Object concat(String left, double right) {
+        if (left.length() + NumberFormatter.MAX_INTEGER_LENGTH < MIN_LENGTH) {
+            // No double takes more than 24 characters
+            return NumberFormatter.append(new StringBuilder(left.length() + 24).append(left), right).toString();
+        }
+        return start(left).append(right);
+    }
+
+    private static LoxString start(String text) {
+        StringBuilder builder = new StringBuilder(text);
+        synchronized (builder) {
+            return new LoxString(builder);
+        }
+    }
+
+    // Tasks may append to the same string, so the builder is only touched
+    // while holding its lock
+    LoxString append(String text) {
+        synchronized (builder) {
+            StringBuilder target = target();
+            target.append(text);
+            return new LoxString(target);
+        }
+    }
+
+    LoxString append(double number) {
+        synchronized (builder) {
+            StringBuilder target = target();
+            NumberFormatter.append(target, number);
+            return new LoxString(target);
+        }
+    }
+
+    // The shared builder if this is its latest version, else a copy of this version
+    private StringBuilder target() {
+        if (builder.length() == length) {
+            return builder;
+        }
+        return new StringBuilder(length + 16).append(builder, 0, length);
+    }
+
+    int length() {
+        return length;
+    }
+
+    String flatten() {
+        String text = flat;
+        if (text == null) {
+            synchronized (builder) {
+                text = builder.substring(0, length);
+            }
+            flat = text;
+        }
+        return text;
+    }
+
+    @Override
+    public String toString() {
+        return flatten();
+    }
+}
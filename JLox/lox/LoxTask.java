@@ -0,0 +1,58 @@
+package JLox.lox;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A Lox function running on a virtual thread, created by spawn().
+ * The task runs in a forked interpreter that shares the globals and output of
+ * its parent but has its own call stack. A runtime error inside the task is
+ * rethrown by join(); a task nobody joins fails silently.
+ */
+class LoxTask {
+    private final FutureTask<Object> future;
+
+    LoxTask(LoxCallable function, Interpreter interpreter) {
+        this.future = new FutureTask<>(() -> {
+            try {
+                return function.call(interpreter, List.of());
+            } finally {
+                interpreter.counters.publish();
+                if (LoxProfiler.ENABLED) {
+                    LoxProfiler.taskEnded();
+                }
+            }
+        });
+    }
+
+    void start(TaskScheduler scheduler) {
+        scheduler.submit(future);
+    }
+
+    // Wait for the task and return its result, or rethrow its runtime error
+    Object join() {
+        try {
+            Object result = future.get();
+            Environment.publish(result);
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeError("Interrupted while joining a task.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeError(cause.toString());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<task>";
+    }
+}
@@ -0,0 +1,27 @@
+package JLox.lox;
+
+/**
+ * A tool attached to a {@link LoxEngine} with {@link LoxEngine#attach}, e.g. a
+ * coverage counter, a tracer or a debugger. The engine wraps every node that
+ * matches the tool's {@link LoxProbeFilter} in a probe, and the interpreter
+ * calls the tool around each execution of a probed node.
+ *
+ * Callbacks run on the thread that executes the node, which for tasks and
+ * parallel natives is not the thread that started the script. A RuntimeError
+ * thrown by a callback is reported like any other Lox runtime error.
+ */
+public interface LoxTool {
+
+    // Before the node is executed or evaluated
+    default void onEnter(LoxProbe probe) {
+    }
+
+    // After it completed: the value of an expression, the returned value of a
+    // return statement (or a statement that contains one), null otherwise
+    default void onReturn(LoxProbe probe, Object value) {
+    }
+
+    // When the node failed with a runtime error, which is rethrown afterwards
+    default void onException(LoxProbe probe, RuntimeError error) {
+    }
+}
@@ -0,0 +1,35 @@
+package JLox.lox;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes UTF-8 text to a channel through a 64 KB buffer, created by
+ * openWriter(path). Text reaches the file when the buffer fills up and when
+ * the writer is closed, so scripts must close their writers.
+ */
+class LoxWriter {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Writer writer;
+
+    LoxWriter(WritableByteChannel channel) {
+        this.writer = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE);
+    }
+
+    void write(String text) throws IOException {
+        writer.write(text);
+    }
+
+    void close() throws IOException {
+        writer.close();
+    }
+
+    @Override
+    public String toString() {
+        return "<writer>";
+    }
+}
@@ -0,0 +1,38 @@
+package JLox.lox;
+
+import java.util.List;
+
+/**
+ * A function implemented in Java and exposed to Lox code.
+ * Natives report errors by throwing {@link RuntimeError} without a token; the
+ * interpreter attributes them to the line of the call.
+ */
+class NativeFunction implements LoxCallable {
+
+    interface Body {
+        Object call(Interpreter interpreter, List<Object> arguments);
+    }
+
+    private final int arity;
+    private final Body body;
+
+    NativeFunction(int arity, Body body) {
+        this.arity = arity;
+        this.body = body;
+    }
+
+    @Override
+    public int arity() {
+        return arity;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        return body.call(interpreter, arguments);
+    }
+
+    @Override
+    public String toString() {
+        return "<native fn>";
+    }
+}
@@ -0,0 +1,348 @@
+package JLox.lox;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The native functions every Lox program starts with.
+ * They live in a scope enclosing the globals, so scripts can shadow them and
+ * embedders never see them in their bindings.
+ */
+final class Natives {
+
+    // Natives keep no state of their own, so one frozen scope serves every
+    // interpreter in the JVM and building an interpreter doesn't rebuild it
+    private static final Environment ENVIRONMENT = define();
+
+    private Natives() {
+    }
+
+    static Environment environment() {
+        return ENVIRONMENT;
+    }
+
+    private static Environment define() {
+        Environment natives = Environment.concurrent(null);
+
+        natives.define("clock", new NativeFunction(0,
+                (interpreter, arguments) -> (double) System.currentTimeMillis() / 1000.0));
+
+        // Lox values reachable from the calling scope, see LoxHeap
+        natives.define("heapStats", new NativeFunction(0,
+                (interpreter, arguments) -> LoxHeap.walk(interpreter.scope()).toMap()));
+
+        defineConcurrency(natives);
+        defineLists(natives);
+        defineMaps(natives);
+        defineBuffers(natives);
+        defineFiles(natives);
+        return natives.freeze();
+    }
+
+    // spawn, join and channels, see LoxTask and LoxChannel
+    private static void defineConcurrency(Environment natives) {
+        natives.define("spawn", new NativeFunction(1, (interpreter, arguments) -> {
+            Object function = arguments.get(0);
+            if (!(function instanceof LoxCallable) || ((LoxCallable) function).arity() != 0) {
+                throw new RuntimeError("Can only spawn functions without parameters.");
+            }
+
+            Environment.publish(function);
+            LoxTask task = new LoxTask((LoxCallable) function, interpreter.fork());
+            task.start(interpreter.tasks);
+            return task;
+        }));
+
+        natives.define("join", new NativeFunction(1, (interpreter, arguments) -> {
+            if (!(arguments.get(0) instanceof LoxTask)) {
+                throw new RuntimeError("Can only join tasks.");
+            }
+            return ((LoxTask) arguments.get(0)).join();
+        }));
+
+        natives.define("channel", new NativeFunction(1, (interpreter, arguments) -> {
+            Object capacity = arguments.get(0);
+            if (!(capacity instanceof Double) || (double) capacity < 0
+                    || (double) capacity != Math.floor((double) capacity)) {
+                throw new RuntimeError("Channel capacity must be a non-negative integer.");
+            }
+            if ((double) capacity > Integer.MAX_VALUE) {
+                throw new RuntimeError("Channel capacity must be at most " + Integer.MAX_VALUE + ".");
+            }
+            return new LoxChannel((int) (double) capacity);
+        }));
+
+        natives.define("send", new NativeFunction(2, (interpreter, arguments) -> {
+            channel(arguments.get(0)).send(arguments.get(1));
+            return null;
+        }));
+
+        natives.define("receive", new NativeFunction(1,
+                (interpreter, arguments) -> channel(arguments.get(0)).receive()));
+    }
+
+    // Accessors of lists beyond indexing, and the parallel operations of LoxParallel
+    private static void defineLists(Environment natives) {
+        natives.define("push", new NativeFunction(2, (interpreter, arguments) -> {
+            list(arguments.get(0)).add(arguments.get(1));
+            return null;
+        }));
+
+        natives.define("pop", new NativeFunction(1, (interpreter, arguments) -> {
+            LoxList list = list(arguments.get(0));
+            if (list.size() == 0) {
+                throw new RuntimeError("Can't pop from an empty list.");
+            }
+            return list.removeLast();
+        }));
+
+        natives.define("length", new NativeFunction(1, (interpreter, arguments) -> {
+            Object collection = arguments.get(0);
+            if (collection instanceof LoxMap) {
+                return (double) ((LoxMap) collection).size();
+            }
+            if (collection instanceof LoxList) {
+                return (double) ((LoxList) collection).size();
+            }
+            if (collection instanceof LoxFloat64Buffer) {
+                return (double) ((LoxFloat64Buffer) collection).length();
+            }
+            throw new RuntimeError("Expected a list, a map or a buffer.");
+        }));
+
+        natives.define("parallelMap", new NativeFunction(2, (interpreter, arguments) ->
+                LoxParallel.map(interpreter, list(arguments.get(0)), function(arguments.get(1), 1))));
+
+        natives.define("parallelReduce", new NativeFunction(3, (interpreter, arguments) ->
+                LoxParallel.reduce(interpreter, list(arguments.get(0)), function(arguments.get(1), 2),
+                        arguments.get(2))));
+
+        natives.define("parallelSort", new NativeFunction(2, (interpreter, arguments) ->
+                LoxParallel.sort(interpreter, list(arguments.get(0)), function(arguments.get(1), 2))));
+    }
+
+    // map() and the operations on maps beyond indexing, see LoxMap
+    private static void defineMaps(Environment natives) {
+        natives.define("map", new NativeFunction(0, (interpreter, arguments) -> new LoxMap()));
+
+        natives.define("has", new NativeFunction(2,
+                (interpreter, arguments) -> map(arguments.get(0)).containsKey(arguments.get(1))));
+
+        natives.define("remove", new NativeFunction(2,
+                (interpreter, arguments) -> map(arguments.get(0)).remove(arguments.get(1))));
+
+        natives.define("keys", new NativeFunction(1,
+                (interpreter, arguments) -> new LoxList(map(arguments.get(0)).keys())));
+
+        natives.define("values", new NativeFunction(1,
+                (interpreter, arguments) -> new LoxList(map(arguments.get(0)).values())));
+    }
+
+    // Float64Buffer(), mapFile() and bulk math over buffers, see LoxFloat64Buffer
+    private static void defineBuffers(Environment natives) {
+        natives.define("Float64Buffer", new NativeFunction(1, (interpreter, arguments) -> {
+            long length = integer(arguments.get(0), "Buffer length must be a non-negative integer.");
+            if (length > LoxFloat64Buffer.MAX_LENGTH) {
+                throw new RuntimeError("Buffer length must be at most " + LoxFloat64Buffer.MAX_LENGTH + ".");
+            }
+            try {
+                return LoxFloat64Buffer.allocate(length);
+            } catch (OutOfMemoryError e) {
+                // Direct memory is capped by -XX:MaxDirectMemorySize, not the heap
+                throw new RuntimeError("Not enough memory for a buffer of " + length + " numbers.");
+            }
+        }));
+
+        natives.define("mapFile", new NativeFunction(2, (interpreter, arguments) -> {
+            Path path = path(arguments.get(0));
+            Object mode = arguments.get(1);
+            if (!"r".equals(mode) && !"rw".equals(mode)) {
+                throw new RuntimeError("Mode must be 'r' or 'rw'.");
+            }
+
+            try {
+                return LoxFloat64Buffer.map(path, mode.equals("rw"));
+            } catch (IOException e) {
+                throw new RuntimeError("Could not map file: " + e.getMessage());
+            }
+        }));
+
+        natives.define("slice", new NativeFunction(3, (interpreter, arguments) -> {
+            LoxFloat64Buffer buffer = buffer(arguments.get(0));
+            long from = integer(arguments.get(1), "Slice bounds must be non-negative integers.");
+            long to = integer(arguments.get(2), "Slice bounds must be non-negative integers.");
+            if (from > to || to > buffer.length()) {
+                throw new RuntimeError("Slice bounds out of range.");
+            }
+            return buffer.slice(from, to);
+        }));
+
+        natives.define("sum", new NativeFunction(1,
+                (interpreter, arguments) -> buffer(arguments.get(0)).sum()));
+
+        // nil for an empty buffer, which has neither
+        natives.define("min", new NativeFunction(1, (interpreter, arguments) -> {
+            LoxFloat64Buffer buffer = buffer(arguments.get(0));
+            return buffer.length() == 0 ? null : buffer.min();
+        }));
+
+        natives.define("max", new NativeFunction(1, (interpreter, arguments) -> {
+            LoxFloat64Buffer buffer = buffer(arguments.get(0));
+            return buffer.length() == 0 ? null : buffer.max();
+        }));
+
+        natives.define("dot", new NativeFunction(2, (interpreter, arguments) -> {
+            LoxFloat64Buffer left = buffer(arguments.get(0));
+            LoxFloat64Buffer right = buffer(arguments.get(1));
+            if (left.length() != right.length()) {
+                throw new RuntimeError("Buffers must have the same length.");
+            }
+            return left.dot(right);
+        }));
+    }
+
+    // Streaming line input, whole-file reads and buffered output, see
+    // LoxLineReader and LoxWriter
+    private static void defineFiles(Environment natives) {
+        natives.define("openLines", new NativeFunction(1, (interpreter, arguments) -> {
+            Path path = path(arguments.get(0));
+            try {
+                return new LoxLineReader(FileChannel.open(path, StandardOpenOption.READ));
+            } catch (IOException e) {
+                throw new RuntimeError("Could not open file: " + e.getMessage());
+            }
+        }));
+
+        natives.define("nextLine", new NativeFunction(1, (interpreter, arguments) -> {
+            if (!(arguments.get(0) instanceof LoxLineReader)) {
+                throw new RuntimeError("Expected a line reader.");
+            }
+            try {
+                return ((LoxLineReader) arguments.get(0)).readLine();
+            } catch (IOException e) {
+                throw new RuntimeError("Could not read file: " + e.getMessage());
+            }
+        }));
+
+        // Maps the file instead of copying it through a stream
+        natives.define("readFile", new NativeFunction(1, (interpreter, arguments) -> {
+            Path path = path(arguments.get(0));
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new RuntimeError("File is too large to read at once, use openLines().");
+                }
+                MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                return StandardCharsets.UTF_8.decode(bytes).toString();
+            } catch (IOException e) {
+                throw new RuntimeError("Could not read file: " + e.getMessage());
+            }
+        }));
+
+        natives.define("openWriter", new NativeFunction(1, (interpreter, arguments) -> {
+            Path path = path(arguments.get(0));
+            try {
+                return new LoxWriter(FileChannel.open(path, StandardOpenOption.WRITE,
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING));
+            } catch (IOException e) {
+                throw new RuntimeError("Could not open file: " + e.getMessage());
+            }
+        }));
+
+        natives.define("write", new NativeFunction(2, (interpreter, arguments) -> {
+            write(arguments.get(0), Interpreter.stringify(arguments.get(1)));
+            return null;
+        }));
+
+        natives.define("writeLine", new NativeFunction(2, (interpreter, arguments) -> {
+            write(arguments.get(0), Interpreter.stringify(arguments.get(1)) + "\n");
+            return null;
+        }));
+
+        natives.define("close", new NativeFunction(1, (interpreter, arguments) -> {
+            try {
+                if (arguments.get(0) instanceof LoxWriter) {
+                    ((LoxWriter) arguments.get(0)).close();
+                } else if (arguments.get(0) instanceof LoxLineReader) {
+                    ((LoxLineReader) arguments.get(0)).close();
+                } else {
+                    throw new RuntimeError("Can only close readers and writers.");
+                }
+            } catch (IOException e) {
+                throw new RuntimeError("Could not close file: " + e.getMessage());
+            }
+            return null;
+        }));
+    }
+
+    private static Path path(Object value) {
+        if (value instanceof String) {
+            try {
+                return Paths.get((String) value);
+            } catch (InvalidPathException e) {
+                throw new RuntimeError("Invalid path: " + e.getMessage());
+            }
+        }
+        throw new RuntimeError("Expected a file path.");
+    }
+
+    private static void write(Object writer, String text) {
+        if (!(writer instanceof LoxWriter)) {
+            throw new RuntimeError("Expected a writer.");
+        }
+        try {
+            ((LoxWriter) writer).write(text);
+        } catch (IOException e) {
+            throw new RuntimeError("Could not write file: " + e.getMessage());
+        }
+    }
+
+    private static LoxList list(Object value) {
+        if (value instanceof LoxList) {
+            return (LoxList) value;
+        }
+        throw new RuntimeError("Expected a list.");
+    }
+
+    private static LoxMap map(Object value) {
+        if (value instanceof LoxMap) {
+            return (LoxMap) value;
+        }
+        throw new RuntimeError("Expected a map.");
+    }
+
+    private static LoxFloat64Buffer buffer(Object value) {
+        if (value instanceof LoxFloat64Buffer) {
+            return (LoxFloat64Buffer) value;
+        }
+        throw new RuntimeError("Expected a buffer.");
+    }
+
+    private static long integer(Object value, String message) {
+        if (!(value instanceof Double) || (double) value < 0
+                || (double) value != Math.floor((double) value)) {
+            throw new RuntimeError(message);
+        }
+        return (long) (double) value;
+    }
+
+    private static LoxCallable function(Object value, int arity) {
+        if (value instanceof LoxCallable && ((LoxCallable) value).arity() == arity) {
+            return (LoxCallable) value;
+        }
+        throw new RuntimeError("Expected a function with " + arity
+                + (arity == 1 ? " parameter." : " parameters."));
+    }
+
+    private static LoxChannel channel(Object value) {
+        if (value instanceof LoxChannel) {
+            return (LoxChannel) value;
+        }
+        throw new RuntimeError("Expected a channel.");
+    }
+}
@@ -0,0 +1,80 @@
+package JLox.lox;
+
+/**
+ * Formats Lox numbers the way print shows them: integers below 10^7 as plain
+ * digits ("-0" included), everything else like Double.toString, which gives
+ * the shortest decimal that reads back as the same double and switches to
+ * scientific notation at 10^7 (e.g. 1.0E7, 0.001, 1.0E-4).
+ *
+ * Integers are by far the most common case and are written digit by digit
+ * straight into the caller's buffer. Other values go through the JDK's
+ * shortest round-trip conversion (Schubfach since JDK 19), which
+ * StringBuilder.append(double) also runs without an intermediate String.
+ */
+final class NumberFormatter {
+
+    // The first integer that Double.toString writes in scientific notation
+    private static final double PLAIN_LIMIT = 1e7;
+
+    // Longest plain integer: a sign and seven digits
+    static final int MAX_INTEGER_LENGTH = 8;
+
+    private NumberFormatter() {
+    }
+
+    static String format(double value) {
+        if (isPlainInteger(value)) {
+            if (value == 0) {
+                return isNegativeZero(value) ? "-0" : "0";
+            }
+            return Integer.toString((int) value);
+        }
+        return Double.toString(value);
+    }
+
+    static StringBuilder append(StringBuilder text, double value) {
+        if (isPlainInteger(value)) {
+            if (isNegativeZero(value)) {
+                return text.append("-0");
+            }
+            return text.append((int) value);
+        }
+        return text.append(value);
+    }
+
+    // Whether writeInteger() can format the value
+    static boolean isPlainInteger(double value) {
+        return value > -PLAIN_LIMIT && value < PLAIN_LIMIT && value == (int) value;
+    }
+
+    // Write a plain integer as ASCII digits at the offset, which must leave
+    // room for MAX_INTEGER_LENGTH bytes. Returns the offset after the number.
+    static int writeInteger(byte[] buffer, int offset, double value) {
+        int number = (int) value;
+        if (number < 0 || isNegativeZero(value)) {
+            buffer[offset++] = '-';
+            number = -number;
+        }
+
+        int end = offset + digitCount(number);
+        int position = end;
+        do {
+            buffer[--position] = (byte) ('0' + number % 10);
+            number /= 10;
+        } while (number != 0);
+        return end;
+    }
+
+    private static int digitCount(int number) {
+        int count = 1;
+        while (number >= 10) {
+            number /= 10;
+            count++;
+        }
+        return count;
+    }
+
+    private static boolean isNegativeZero(double value) {
+        return Double.doubleToRawLongBits(value) == Long.MIN_VALUE;
+    }
+}
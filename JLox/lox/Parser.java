@@ -25,8 +25,12 @@ public class Parser {
     // It is used to track which token is currently being processed.
     private int current = 0;
 
-    public Parser(List<Token> tokens) {
+    // Sink for syntax errors of this run
+    private final ErrorReporter reporter;
+
+    public Parser(List<Token> tokens, ErrorReporter reporter) {
         this.tokens = tokens;
+        this.reporter = reporter;
     }
 
     // Parses the tokens and returns the root statement of the AST.
@@ -44,15 +48,16 @@ public class Parser {
 
     // declaration → classDecl | funDeclvarDecl | statement
     private Stmt declaration() {
+        Token first = peek();
         try {
             if (match(TokenType.CLASS)) {
-                return classDeclaration();
+                return at(classDeclaration(), first);
             }
             if (match(TokenType.FUN)) {
-                return function("function");
+                return at(function("function"), first);
             }
             if (match(TokenType.VAR)) {
-                return varDeclaration();
+                return at(varDeclaration(), first);
             }
             return statement();
         } catch (ParseError e) {
@@ -98,34 +103,41 @@ public class Parser {
 
     // statement → exprStmt | ifStmt | printStmt | whileStmt | block
     private Stmt statement() {
+        Token first = peek();
         if (match(TokenType.FOR))
-            return forStatement();
+            return forStatement(first);
         if (match(TokenType.IF))
-            return ifStatement();
+            return at(ifStatement(), first);
         if (match(TokenType.PRINT))
-            return printStatement();
+            return at(printStatement(), first);
         if (match(TokenType.RETURN))
-            return returnStatement();
+            return at(returnStatement(), first);
         if (match(TokenType.WHILE))
-            return whileStatement();
+            return at(whileStatement(), first);
         if (match(TokenType.LEFT_BRACE))
-            return new Stmt.Block(block());
+            return at(new Stmt.Block(block()), first);
+
+        return at(expressionStatement(), first);
+    }
 
-        return expressionStatement();
+    // Record the line a statement starts on
+    private static <T extends Stmt> T at(T statement, Token first) {
+        statement.line = first.line;
+        return statement;
     }
 
     // forStmt → "for" "(" ( varDecl | exprStmt | ";" ) expression? ";" expression?
     // ")" statement
-    private Stmt forStatement() {
+    private Stmt forStatement(Token keyword) {
         consume(TokenType.LEFT_PAREN, "Expect '(' after 'for'.");
 
         Stmt initializer;
         if (match(TokenType.SEMICOLON)) {
             initializer = null;
         } else if (match(TokenType.VAR)) {
-            initializer = varDeclaration();
+            initializer = at(varDeclaration(), keyword);
         } else {
-            initializer = expressionStatement();
+            initializer = at(expressionStatement(), keyword);
         }
 
         Expr condition = null;
@@ -135,6 +147,7 @@ public class Parser {
         consume(TokenType.SEMICOLON, "Expect ';' after loop condition.");
 
         Expr increment = null;
+        Token incrementStart = peek();
         if (!check(TokenType.RIGHT_PAREN)) {
             increment = expression();
         }
@@ -143,18 +156,19 @@ public class Parser {
         Stmt body = statement();
 
         if (increment != null) {
-            body = new Stmt.Block(
+            body = at(new Stmt.Block(
                     Arrays.asList(
                             body,
-                            new Stmt.Expression(increment)));
+                            at(new Stmt.Expression(increment), incrementStart))),
+                    keyword);
         }
 
         if (condition == null)
             condition = new Expr.Literal(true);
-        body = new Stmt.While(condition, body);
+        body = at(new Stmt.While(condition, body), keyword);
 
         if (initializer != null) {
-            body = new Stmt.Block(Arrays.asList(initializer, body));
+            body = at(new Stmt.Block(Arrays.asList(initializer, body)), keyword);
         }
 
         return body;
@@ -244,7 +258,7 @@ public class Parser {
 
         consume(TokenType.LEFT_BRACE, "Expect '{' before " + kind + " body.");
         List<Stmt> body = block();
-        return new Stmt.Function(name, parameters, body);
+        return at(new Stmt.Function(name, parameters, body), name);
     }
 
     // expression → assignment
@@ -266,6 +280,9 @@ public class Parser {
             } else if (expr instanceof Expr.Get) {
                 Expr.Get get = (Expr.Get) expr;
                 return new Expr.Set(get.object, get.name, values);
+            } else if (expr instanceof Expr.Index) {
+                Expr.Index index = (Expr.Index) expr;
+                return new Expr.SetIndex(index.object, index.bracket, index.index, values);
             }
 
             error(equals, "Invalid assignment target.");
@@ -363,7 +380,7 @@ public class Parser {
         return call();
     }
 
-    // call → primary ( "(" arguments? ")" | "." IDENTIFIER )* ;
+    // call → primary ( "(" arguments? ")" | "." IDENTIFIER | "[" expression "]" )* ;
     private Expr call() {
         Expr expr = primary();
 
@@ -373,6 +390,10 @@ public class Parser {
             } else if (match(TokenType.DOT)) {
                 Token name = consume(TokenType.IDENTIFIER, "Expect property name after '.'.");
                 expr = new Expr.Get(expr, name);
+            } else if (match(TokenType.LEFT_BRACKET)) {
+                Expr index = expression();
+                Token bracket = consume(TokenType.RIGHT_BRACKET, "Expect ']' after index.");
+                expr = new Expr.Index(expr, bracket, index);
             } else {
                 break;
             }
@@ -401,8 +422,23 @@ public class Parser {
         return new Expr.Call(callee, paren, arguments);
     }
 
+    // Helper to parse the elements of a list literal
+    private Expr finishList() {
+        List<Expr> elements = new ArrayList<>();
+
+        if (!check(TokenType.RIGHT_BRACKET)) {
+            do {
+                elements.add(expression());
+            } while (match(TokenType.COMMA));
+        }
+
+        Token bracket = consume(TokenType.RIGHT_BRACKET, "Expect ']' after list elements.");
+
+        return new Expr.ListLiteral(bracket, elements);
+    }
+
     // primary → NUMBER | STRING | "true" | "false" | "nil" | "(" expression ")" |
-    // IDENTIFIER;
+    // "[" arguments? "]" | IDENTIFIER;
     private Expr primary() {
         if (match(TokenType.FALSE))
             return new Expr.Literal(false);
@@ -436,6 +472,10 @@ public class Parser {
             return new Expr.Grouping(expr);
         }
 
+        if (match(TokenType.LEFT_BRACKET)) {
+            return finishList();
+        }
+
         throw error(peek(), "Expect expression.");
     }
 
@@ -497,7 +537,7 @@ public class Parser {
     // Throw a ParseError with the given token and message to indicate a parsing
     // error.
     private ParseError error(Token token, String message) {
-        Lox.error(token, message);
+        reporter.error(token, message);
         return new ParseError();
     }
 
@@ -7,4 +7,9 @@ public class RuntimeError extends RuntimeException{
         super(message);
         this.token = token;
     }
+
+    // Raised by native functions, the interpreter fills in the call site
+    RuntimeError(String message) {
+        this(null, message);
+    }
 }
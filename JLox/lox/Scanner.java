@@ -34,6 +34,9 @@ public class Scanner {
     // Immutable source program
     private final String source;
 
+    // Sink for lexical errors of this run
+    private final ErrorReporter reporter;
+
     // List of tokens
     private final List<Token> tokens = new ArrayList<>();
 
@@ -43,8 +46,9 @@ public class Scanner {
     private int line = 1;
 
 
-    public Scanner(String source) {
+    public Scanner(String source, ErrorReporter reporter) {
         this.source = source;
+        this.reporter = reporter;
     }
 
     // Scan and return all the tokens
@@ -68,6 +72,8 @@ public class Scanner {
             case ')': addToken(TokenType.RIGHT_PAREN); break;
             case '{': addToken(TokenType.LEFT_BRACE); break;
             case '}': addToken(TokenType.RIGHT_BRACE); break;
+            case '[': addToken(TokenType.LEFT_BRACKET); break;
+            case ']': addToken(TokenType.RIGHT_BRACKET); break;
             case ',': addToken(TokenType.COMMA); break;
             case '.': addToken(TokenType.DOT); break;
             case '-': addToken(TokenType.MINUS); break;
@@ -114,7 +120,7 @@ public class Scanner {
                     
                     // If we reached end of the file without closing comment then report error
                     if (nesting > 0) {
-                        Lox.error(line, "Unterminated multi-line comment.");
+                        reporter.error(line, "Unterminated multi-line comment.");
                     }
                     
                 } else {
@@ -137,7 +143,7 @@ public class Scanner {
                 } else if (isAlpha(c)) {
                     identifier();
                 } else {
-                    Lox.error(line, "Unexpected character.");
+                    reporter.error(line, "Unexpected character.");
                 }
                 break;
         }
@@ -153,9 +159,11 @@ public class Scanner {
         String text = source.substring(start, current);
         TokenType type = keywords.get(text);
 
-        // If not it is identifier
+        // If not it is identifier. Its name is interned, so looking it up in a
+        // scope or among the fields of an instance matches by identity.
         if (type == null) {
-            type = TokenType.IDENTIFIER;
+            tokens.add(new Token(TokenType.IDENTIFIER, text.intern(), null, line));
+            return;
         }
 
         addToken(type);
@@ -194,15 +202,16 @@ public class Scanner {
 
         // If we reached end of the file without closing string
         if (isAtEnd()) {
-            Lox.error(line, "Unterminated string.");
+            reporter.error(line, "Unterminated string.");
             return;
         }
 
         // Closing "
         advance();
 
-        // Get the string value without quotes
-        String value = source.substring(start + 1, current - 1);
+        // Get the string value without quotes, interned so that equal literals
+        // are the same object (see Interpreter.isEqual())
+        String value = source.substring(start + 1, current - 1).intern();
         addToken(TokenType.STRING, value);
     }
 
@@ -10,10 +10,15 @@ public abstract class Stmt {
     R visitFunctionStmt(Function stmt);
     R visitIfStmt(If stmt);
     R visitPrintStmt(Print stmt);
+    R visitProbeStmt(Probe stmt);
     R visitReturnStmt(Return stmt);
     R visitVarStmt(Var stmt);
     R visitWhileStmt(While stmt);
   }
+  // Line of the statement's first token, written once by the Parser.
+  // Statements it synthesizes (e.g. for loops) get the line they came from.
+  int line;
+
   static class Block extends Stmt {
     Block(List<Stmt> statements) {
       this.statements = statements;
@@ -98,6 +103,20 @@ public abstract class Stmt {
 
     final Expr expression;
   }
+  static class Probe extends Stmt {
+    Probe(Stmt statement, LoxProbe probe) {
+      this.statement = statement;
+      this.probe = probe;
+    }
+
+    @Override
+    <R> R accept(Visitor<R> visitor) {
+      return visitor.visitProbeStmt(this);
+    }
+
+    final Stmt statement;
+    final LoxProbe probe;
+  }
   static class Return extends Stmt {
     Return(Token keyword, Expr value) {
       this.keyword = keyword;
@@ -0,0 +1,62 @@
+package JLox.lox;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the tasks spawned by one Lox program on virtual threads.
+ * At most maxRunning tasks hold a thread at any time; the rest wait in a queue
+ * as a handful of small objects. A blocked virtual thread keeps its whole
+ * stack on the heap, so this cap is what keeps a program that fans out 100k
+ * tasks in bounded memory. spawn() itself never blocks.
+ *
+ * The cap defaults to 10000 and can be changed with -Djlox.maxTasks=N. A
+ * program that needs more tasks blocked at the same time than the cap allows
+ * will stall, much like a program that exhausts a thread pool.
+ */
+class TaskScheduler {
+
+    private static final int MAX_RUNNING = Integer.getInteger("jlox.maxTasks", 10_000);
+
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger running = new AtomicInteger();
+
+    void submit(Runnable task) {
+        pending.add(task);
+        startWorkers();
+    }
+
+    // Start a worker for each pending task while below the cap
+    private void startWorkers() {
+        while (!pending.isEmpty()) {
+            int current = running.get();
+            if (current >= MAX_RUNNING) {
+                return;
+            }
+            if (!running.compareAndSet(current, current + 1)) {
+                continue;
+            }
+
+            Runnable first = pending.poll();
+            if (first == null) {
+                running.decrementAndGet();
+                continue;
+            }
+            Thread.ofVirtual().name("lox-task").start(() -> work(first));
+        }
+    }
+
+    // Keep running queued tasks on this virtual thread until the queue is empty
+    private void work(Runnable first) {
+        try {
+            for (Runnable task = first; task != null; task = pending.poll()) {
+                task.run();
+            }
+        } finally {
+            running.decrementAndGet();
+            // A task queued between our last poll and the decrement needs a worker
+            startWorkers();
+        }
+    }
+}
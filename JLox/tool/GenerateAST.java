@@ -26,9 +26,13 @@ public class GenerateAST {
                 "Get      : Expr object, Token name",
                 "Call     : Expr callee, Token paren, List<Expr> arguments",
                 "Grouping : Expr expression",
+                "Index    : Expr object, Token bracket, Expr index",
+                "ListLiteral : Token bracket, List<Expr> elements",
                 "Literal  : Object value",
                 "Logical  : Expr left, Token operator, Expr right",
+                "Probe    : Expr expression, LoxProbe probe",
                 "Set      : Expr object, Token name, Expr value",
+                "SetIndex : Expr object, Token bracket, Expr index, Expr value",
                 "Super    : Token keyword, Token method",
                 "This     : Token keyword",
                 "Unary    : Token operator, Expr right",
@@ -42,6 +46,7 @@ public class GenerateAST {
                 "Function   : Token name, List<Token> params, List<Stmt> body",
                 "If         : Expr codition, Stmt thenBranch, Stmt elseBranch",
                 "Print      : Expr expression",
+                "Probe      : Stmt statement, LoxProbe probe",
                 "Return     : Token keyword, Expr value",
                 "Var        : Token name, Expr initializer",
                 "While      : Expr condition, Stmt body"
@@ -62,6 +67,16 @@ public class GenerateAST {
 
         defineVisitor(writer, baseName, types);
 
+        // Expressions carry the scope distance computed by the Resolver
+        if (baseName.equals("Expr")) {
+            defineResolution(writer);
+        }
+
+        // Statements know the line they start on, e.g. for profiles
+        if (baseName.equals("Stmt")) {
+            defineLocation(writer);
+        }
+
         // The AST classes
         for (String type : types) {
             String className = type.split(":")[0].trim();
@@ -90,6 +105,33 @@ public class GenerateAST {
         writer.println("  }");
     }
 
+    // Generate the resolution slot shared by all expressions.
+    // Storing it on the node instead of in a per-interpreter side table lets one
+    // resolved program be executed by many interpreters at once.
+    private static void defineResolution(PrintWriter writer) {
+        writer.println("  // Number of scopes between this expression and the declaration it refers");
+        writer.println("  // to. Written once by the Resolver, GLOBAL means look it up in the globals.");
+        writer.println("  static final int GLOBAL = -1;");
+        writer.println("  int depth = GLOBAL;");
+        writer.println();
+    }
+
+    // Generate the line slot shared by all statements
+    private static void defineLocation(PrintWriter writer) {
+        writer.println("  // Line of the statement's first token, written once by the Parser.");
+        writer.println("  // Statements it synthesizes (e.g. for loops) get the line they came from.");
+        writer.println("  int line;");
+        writer.println();
+    }
+
+    // Generate the tail position flag of calls
+    private static void defineTailCall(PrintWriter writer) {
+        writer.println();
+        writer.println("    // Whether this call is the value of a return statement, so the function");
+        writer.println("    // making it can be left before it runs. Written once by the Resolver.");
+        writer.println("    boolean tailCall;");
+    }
+
     // Helper function to define sub-classes inside the base class
     private static void defineType(PrintWriter writer, String baseName, String className, String fieldList) {
         writer.println("  static class " + className + " extends " + baseName + " {");
@@ -117,6 +159,11 @@ public class GenerateAST {
             writer.println("    final " + field + ";");
         }
 
+        // Calls know whether they are in tail position
+        if (baseName.equals("Expr") && className.equals("Call")) {
+            defineTailCall(writer);
+        }
+
         writer.println("  }");
     }
 }
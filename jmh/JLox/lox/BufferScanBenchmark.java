@@ -0,0 +1,90 @@
+package JLox.lox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scans a memory-mapped file of doubles with sum, min, max and dot from Lox.
+ * sum, min and max read the file once each and dot reads it twice, so one
+ * run reads it five times. The file never touches the Java heap, so the
+ * collection count from -prof gc should stay at (or near) zero whatever its
+ * size, even with the 64 MB heap the benchmark forks with.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx64m")
+public class BufferScanBenchmark {
+
+    private static final String SCAN = "var data = mapFile(\"%s\", \"r\");\n" +
+            "var total = sum(data);\n" +
+            "var low = min(data);\n" +
+            "var high = max(data);\n" +
+            "var square = dot(data, data);\n";
+
+    @Param({ "2048" })
+    public long megabytes;
+
+    private Path file;
+    private LoxContext context;
+    private LoxProgram scan;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("jlox-bench", ".f64");
+        write(file, megabytes * 1024 * 1024 / Double.BYTES);
+        context = new LoxEngine().newContext(new PrintStream(OutputStream.nullOutputStream()), System.err);
+        scan = context.compile(String.format(SCAN, file.toString().replace("\\", "/")));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int scan() {
+        context.execute(scan);
+        return context.exitCode();
+    }
+
+    // Fill the file with a sawtooth of doubles, 1 MB at a time
+    private static void write(Path file, long count) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(1024 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            for (long i = 0; i < count; ) {
+                block.clear();
+                while (block.hasRemaining() && i < count) {
+                    block.putDouble(i++ % 1000);
+                }
+                block.flip();
+                while (block.hasRemaining()) {
+                    channel.write(block);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package JLox.lox;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Builds strings of 1.25 to 10 MB by appending 10 characters at a time in a
+ * Lox loop. The time per MB stays flat when appending takes linear time and
+ * doubles with every size when it is quadratic.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConcatBenchmark {
+
+    private static final String BUILD = "var s = \"\";\n" +
+            "for (var i = 0; i < %d; i = i + 1) s = s + \"0123456789\";\n";
+
+    @Param({ "1.25", "2.5", "5", "10" })
+    public double megabytes;
+
+    private LoxProgram build;
+    private long appends;
+
+    @Setup
+    public void setUp() {
+        appends = (long) (megabytes * 1024 * 1024 / 10);
+        build = Scripts.compile(String.format(BUILD, appends));
+    }
+
+    // Reading the string back flattens it, which is part of the cost
+    @Benchmark
+    public String build() {
+        Interpreter interpreter = Scripts.interpreter();
+        interpreter.interpret(build.statements);
+        String built = (String) interpreter.global("s");
+        if (built.length() != appends * 10) {
+            throw new IllegalStateException("Built " + built.length() + " characters instead of " + appends * 10);
+        }
+        return built;
+    }
+}
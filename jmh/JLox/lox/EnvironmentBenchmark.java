@@ -0,0 +1,69 @@
+package JLox.lox;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Variable lookups: resolved locals through getAt() and globals through
+ * get(), both from a block nested three scopes deep, plus a lookup in a
+ * scope that was shared with another thread and so became concurrent.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvironmentBenchmark {
+
+    private final Token global = Scripts.identifier("answer");
+
+    private Environment innermost;
+    private Environment shared;
+
+    @Setup
+    public void setUp() {
+        Environment globals = Environment.concurrent(new Environment());
+        globals.define("answer", 42.0);
+
+        Environment function = new Environment(globals);
+        function.define("local", 1.0);
+        innermost = new Environment(new Environment(new Environment(function)));
+        innermost.define("x", 2.0);
+
+        shared = new Environment(globals);
+        shared.define("local", 1.0);
+        shared.share();
+    }
+
+    @Benchmark
+    public Object getAtSameScope() {
+        return innermost.getAt(0, "x");
+    }
+
+    @Benchmark
+    public Object getAtEnclosing() {
+        return innermost.getAt(3, "local");
+    }
+
+    @Benchmark
+    public Object getAtShared() {
+        return shared.getAt(0, "local");
+    }
+
+    // Walks all five scopes
+    @Benchmark
+    public Object getGlobal() {
+        return innermost.get(global);
+    }
+}
@@ -0,0 +1,60 @@
+package JLox.lox;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scanner, Parser and Resolver on the test/benchmark scripts, each phase on
+ * the output of the previous one so only that phase is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrontEndBenchmark {
+
+    @Param({ "binary_trees", "fib", "method_call", "string_equality", "zoo" })
+    public String script;
+
+    private String source;
+    private List<Token> tokens;
+    private List<Stmt> statements;
+
+    @Setup
+    public void setUp() {
+        source = Scripts.source(script);
+        tokens = new Scanner(source, Scripts.reporter()).scanTokens();
+        statements = new Parser(tokens, Scripts.reporter()).parse();
+    }
+
+    @Benchmark
+    public List<Token> scanTokens() {
+        return new Scanner(source, Scripts.reporter()).scanTokens();
+    }
+
+    @Benchmark
+    public List<Stmt> parse() {
+        return new Parser(tokens, Scripts.reporter()).parse();
+    }
+
+    // Resolving again only rewrites the same depths into the same tree
+    @Benchmark
+    public List<Stmt> resolve() {
+        new Resolver(Scripts.reporter()).resolve(statements);
+        return statements;
+    }
+}
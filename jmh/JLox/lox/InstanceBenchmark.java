@@ -0,0 +1,79 @@
+package JLox.lox;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Fields, bound methods and instantiation: LoxInstance.get/set and
+ * LoxClass.call, with and without an initializer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstanceBenchmark {
+
+    private static final String CLASSES = "class Point {\n" +
+            "  init(x, y) { this.x = x; this.y = y; }\n" +
+            "  length() { return this.x + this.y; }\n" +
+            "}\n" +
+            "class Empty {}\n";
+
+    private final Token x = Scripts.identifier("x");
+    private final Token length = Scripts.identifier("length");
+    private final List<Object> coordinates = List.of(1.0, 2.0);
+
+    private Interpreter interpreter;
+    private LoxClass point;
+    private LoxClass empty;
+    private LoxInstance instance;
+    private double next;
+
+    @Setup
+    public void setUp() {
+        interpreter = Scripts.interpreter();
+        interpreter.interpret(Scripts.compile(CLASSES).statements);
+        point = (LoxClass) interpreter.global("Point");
+        empty = (LoxClass) interpreter.global("Empty");
+        instance = (LoxInstance) point.call(interpreter, coordinates);
+    }
+
+    @Benchmark
+    public Object getField() {
+        return instance.get(x, interpreter.counters);
+    }
+
+    @Benchmark
+    public void setField() {
+        instance.set(x, next++);
+    }
+
+    // Looks the method up in the class and binds it to the instance
+    @Benchmark
+    public Object getMethod() {
+        return instance.get(length, interpreter.counters);
+    }
+
+    @Benchmark
+    public Object callClass() {
+        return empty.call(interpreter, List.of());
+    }
+
+    @Benchmark
+    public Object callClassWithInit() {
+        return point.call(interpreter, coordinates);
+    }
+}
@@ -0,0 +1,89 @@
+package JLox.lox;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Counts the lines of a generated log file with openLines/nextLine from Lox,
+ * and with wc -l as the yardstick. The Lox side runs in bounded memory, so
+ * the benchmark forks with a heap much smaller than the file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx64m")
+public class LineThroughputBenchmark {
+
+    private static final String COUNT = "var reader = openLines(\"%s\");\n" +
+            "var count = 0;\n" +
+            "while (nextLine(reader) != nil) count = count + 1;\n" +
+            "close(reader);\n";
+
+    @Param({ "1024" })
+    public long megabytes;
+
+    private Path file;
+    private LoxContext context;
+    private LoxProgram count;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("jlox-bench", ".log");
+        write(file, megabytes * 1024 * 1024);
+        context = new LoxEngine().newContext(new PrintStream(OutputStream.nullOutputStream()), System.err);
+        count = context.compile(String.format(COUNT, file.toString().replace("\\", "/")));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int jlox() {
+        context.execute(count);
+        return context.exitCode();
+    }
+
+    @Benchmark
+    public String wc() throws IOException, InterruptedException {
+        Process wc = new ProcessBuilder("wc", "-l", file.toString()).start();
+        String output = new String(wc.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        wc.waitFor();
+        return output;
+    }
+
+    // Fill the file with log-like lines of varying length
+    private static void write(Path file, long size) throws IOException {
+        long written = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (long i = 0; written < size; i++) {
+                String line = "2024-01-01T00:00:" + (i % 60) + " INFO request " + i
+                        + " served in " + (i * 7 % 1000) + " ms\n";
+                writer.write(line);
+                written += line.length();
+            }
+        }
+    }
+}
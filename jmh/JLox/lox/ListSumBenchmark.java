@@ -0,0 +1,78 @@
+package JLox.lox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sums a list of numbers by index. The same loop summing the index instead
+ * of the element is the control: whatever the loop itself allocates (boxed
+ * loop counter and running sum) shows up in both, so the difference in
+ * gc.alloc.rate.norm from -prof gc, divided by the elements, is what reading
+ * the list costs per element.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ListSumBenchmark {
+
+    private static final String FILL = "var n = %d;\n" +
+            "var numbers = [];\n" +
+            "for (var i = 0; i < n; i = i + 1) push(numbers, i);\n";
+
+    private static final String SUM = "var sum = 0;\n" +
+            "for (var i = 0; i < n; i = i + 1) sum = sum + numbers[i];\n";
+
+    private static final String CONTROL = "var sum = 0;\n" +
+            "for (var i = 0; i < n; i = i + 1) sum = sum + i;\n";
+
+    @Param({ "10000000" })
+    public int elements;
+
+    private LoxContext context;
+    private LoxProgram fill;
+    private LoxProgram sum;
+    private LoxProgram control;
+
+    @Setup
+    public void setUp() {
+        context = new LoxEngine().newContext(new PrintStream(OutputStream.nullOutputStream()), System.err);
+        fill = context.compile(String.format(FILL, elements));
+        sum = context.compile(SUM);
+        control = context.compile(CONTROL);
+        context.execute(fill);
+    }
+
+    @Benchmark
+    public int fill() {
+        context.execute(fill);
+        return context.exitCode();
+    }
+
+    @Benchmark
+    public int sum() {
+        context.execute(sum);
+        return context.exitCode();
+    }
+
+    @Benchmark
+    public int control() {
+        context.execute(control);
+        return context.exitCode();
+    }
+}
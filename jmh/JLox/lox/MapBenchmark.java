@@ -0,0 +1,123 @@
+package JLox.lox;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Inserting and looking up 1M number keys or 1M string keys in the map
+ * behind Lox's map() and in java.util.HashMap. Keys are inserted and looked
+ * up in two different shuffled orders, so neither table profits from keys
+ * that happen to hash to neighbouring buckets in the order they were created.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapBenchmark {
+
+    private interface Table {
+        void put(Object key, Object value);
+
+        Object get(Object key);
+    }
+
+    @Param({ "1000000" })
+    public int count;
+
+    @Param({ "LoxMap", "HashMap" })
+    public String map;
+
+    @Param({ "numbers", "strings" })
+    public String keys;
+
+    private Object[] inserts;
+    private Object[] lookups;
+    private Table filled;
+
+    @Setup
+    public void setUp() {
+        // Lox numbers are doubles, and string keys are usually built at runtime
+        Object[] created = new Object[count];
+        for (int i = 0; i < count; i++) {
+            created[i] = keys.equals("numbers") ? (Object) (double) i : "key" + i;
+        }
+
+        Random random = new Random(42);
+        inserts = shuffle(created, random);
+        lookups = shuffle(created, random);
+        filled = insert();
+    }
+
+    @Benchmark
+    public Table insert() {
+        Table table = map.equals("LoxMap") ? loxMap() : hashMap();
+        for (Object key : inserts) {
+            table.put(key, key);
+        }
+        return table;
+    }
+
+    @Benchmark
+    public long lookup() {
+        long found = 0;
+        for (Object key : lookups) {
+            if (filled.get(key) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private static Table loxMap() {
+        LoxMap map = new LoxMap();
+        return new Table() {
+            public void put(Object key, Object value) {
+                map.put(key, value);
+            }
+
+            public Object get(Object key) {
+                return map.get(key);
+            }
+        };
+    }
+
+    private static Table hashMap() {
+        Map<Object, Object> map = new HashMap<>();
+        return new Table() {
+            public void put(Object key, Object value) {
+                map.put(key, value);
+            }
+
+            public Object get(Object key) {
+                return map.get(key);
+            }
+        };
+    }
+
+    private static Object[] shuffle(Object[] keys, Random random) {
+        Object[] shuffled = keys.clone();
+        for (int i = shuffled.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Object swap = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = swap;
+        }
+        return shuffled;
+    }
+}
@@ -0,0 +1,74 @@
+package JLox.lox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * parallelMap of a CPU-bound function over a large list with a given number
+ * of worker threads; the speedup is the time with one thread over the time
+ * with more. parallelMap runs in the pool of its caller, so the script is
+ * executed from a ForkJoinPool of that size. Building the list is not timed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParallelMapBenchmark {
+
+    private static final String BUILD = "var l = [];\n" +
+            "for (var i = 0; i < %d; i = i + 1) push(l, i);\n" +
+            "fun work(x) {\n" +
+            "  var y = x;\n" +
+            "  for (var j = 0; j < 4; j = j + 1) y = (y * 31 + 7) / 3;\n" +
+            "  return y;\n" +
+            "}\n";
+
+    private static final String MAP = "var mapped = parallelMap(l, work);\n";
+
+    @Param({ "10000000" })
+    public int elements;
+
+    @Param({ "1", "2", "4", "8" })
+    public int threads;
+
+    private LoxContext context;
+    private LoxProgram map;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        context = new LoxEngine().newContext(new PrintStream(OutputStream.nullOutputStream()), System.err);
+        context.run(String.format(BUILD, elements));
+        map = context.compile(MAP);
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int map() throws InterruptedException, ExecutionException {
+        pool.submit(() -> context.execute(map)).get();
+        return context.exitCode();
+    }
+}
@@ -0,0 +1,76 @@
+package JLox.lox;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Prints lines from a Lox loop into a file through each output sink, and
+ * through an autoflushing PrintStream like jlox used before LoxOutput, which
+ * makes one write system call per line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PrintBenchmark {
+
+    private static final String SCRIPT = "for (var i = 0; i < %d; i = i + 1) print \"GET /index.html 200\";\n";
+
+    @Param({ "10000000" })
+    public long lines;
+
+    @Param({ "autoflush", "block", "line", "async" })
+    public String sink;
+
+    private LoxProgram program;
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        program = Scripts.compile(String.format(SCRIPT, lines));
+        file = Files.createTempFile("jlox-bench", ".out");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int print() throws IOException {
+        try (FileOutputStream stream = new FileOutputStream(file.toFile())) {
+            LoxContext context = open(stream);
+            // A run flushes its output before it returns
+            context.execute(program);
+            return context.exitCode();
+        }
+    }
+
+    private LoxContext open(FileOutputStream stream) {
+        LoxEngine engine = new LoxEngine();
+        if (sink.equals("autoflush")) {
+            return engine.newContext(new PrintStream(stream, true, StandardCharsets.UTF_8), System.err);
+        }
+        return engine.newContext(LoxOutput.create(stream, LoxOutput.Mode.valueOf(sink.toUpperCase())), System.err);
+    }
+}
@@ -0,0 +1,77 @@
+package JLox.lox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * What attached tools cost: a recursive fib run on an engine without tools,
+ * with a tool whose filter matches no node, with a tool counting calls and
+ * with one on every node.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProbeBenchmark {
+
+    private static final String FIB = "fun fib(n) {\n" +
+            "  if (n < 2) return n;\n" +
+            "  return fib(n - 2) + fib(n - 1);\n" +
+            "}\n" +
+            "fib(20);\n";
+
+    // Counts the nodes it is called for
+    private static final class Counter implements LoxTool {
+        long entered;
+
+        @Override
+        public void onEnter(LoxProbe probe) {
+            entered++;
+        }
+    }
+
+    @Param({ "none", "no_matches", "calls", "every_node" })
+    public String tools;
+
+    private LoxContext context;
+    private LoxProgram program;
+
+    @Setup
+    public void setUp() {
+        LoxEngine engine = new LoxEngine();
+        switch (tools) {
+            case "no_matches":
+                engine = engine.attach(LoxProbeFilter.all().lines(0, 0), new Counter());
+                break;
+            case "calls":
+                engine = engine.attach(LoxProbeFilter.all().kinds("Call"), new Counter());
+                break;
+            case "every_node":
+                engine = engine.attach(LoxProbeFilter.all(), new Counter());
+                break;
+        }
+        context = engine.newContext(new PrintStream(OutputStream.nullOutputStream()), System.err);
+        program = context.compile(FIB);
+    }
+
+    @Benchmark
+    public int execute() {
+        context.execute(program);
+        return context.exitCode();
+    }
+}
@@ -0,0 +1,47 @@
+package JLox.lox;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Every test/benchmark script end to end, compiled once and executed in a
+ * fresh interpreter per run. The scripts take seconds each, so every run is
+ * measured on its own after a few warm-up runs in the same JVM.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScriptBenchmark {
+
+    @Param({ "binary_trees", "equality", "fib", "instantiation", "invocation", "method_call",
+            "properties", "string_equality", "trees", "zoo", "zoo_batch" })
+    public String script;
+
+    private LoxProgram program;
+
+    @Setup
+    public void setUp() {
+        program = Scripts.compile(Scripts.source(script));
+    }
+
+    @Benchmark
+    public int execute() {
+        Interpreter interpreter = Scripts.interpreter();
+        interpreter.interpret(program.statements);
+        return interpreter.reporter.exitCode();
+    }
+}
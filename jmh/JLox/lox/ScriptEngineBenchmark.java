@@ -0,0 +1,65 @@
+package JLox.lox;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Evaluations per second of a small rule script through JSR-223, once
+ * compiled up front and once re-parsed on every evaluation. The bindings
+ * change before every evaluation, like a rule engine's would.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScriptEngineBenchmark {
+
+    private static final String RULE = "var score = base * 2 + bonus;\n" +
+            "if (score > threshold) score = threshold;\n" +
+            "score;";
+
+    private ScriptEngine engine;
+    private CompiledScript compiled;
+    private Bindings bindings;
+    private long count;
+
+    @Setup
+    public void setUp() throws ScriptException {
+        engine = new ScriptEngineManager().getEngineByName("lox");
+        compiled = ((Compilable) engine).compile(RULE);
+        bindings = engine.createBindings();
+        bindings.put("bonus", 3.0);
+        bindings.put("threshold", 150.0);
+    }
+
+    @Benchmark
+    public Object compiledEval() throws ScriptException {
+        bindings.put("base", (double) (count++ % 100));
+        return compiled.eval(bindings);
+    }
+
+    @Benchmark
+    public Object evalString() throws ScriptException {
+        bindings.put("base", (double) (count++ % 100));
+        return engine.eval(RULE, bindings);
+    }
+}
@@ -0,0 +1,52 @@
+package JLox.lox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Shared setup for the JMH benchmarks. They live in JLox.lox so they can
+ * reach the package-private parts of the interpreter, but are built separately
+ * (make jmh), so the interpreter itself never depends on JMH.
+ */
+final class Scripts {
+
+    // Where the test/benchmark scripts are, relative to the working directory
+    private static final String DIRECTORY = System.getProperty("jlox.benchmarks", "test/benchmark");
+
+    private Scripts() {
+    }
+
+    static String source(String name) {
+        try {
+            return new String(Files.readAllBytes(Paths.get(DIRECTORY, name + ".lox")), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // An interpreter whose output goes nowhere and whose errors fail the benchmark
+    static Interpreter interpreter() {
+        return new Interpreter(LoxOutput.of(new PrintStream(OutputStream.nullOutputStream())), reporter());
+    }
+
+    static ErrorReporter reporter() {
+        return new ErrorReporter(System.err);
+    }
+
+    static LoxProgram compile(String source) {
+        LoxProgram program = new LoxEngine().compile(source, reporter());
+        if (program == null) {
+            throw new IllegalStateException("Benchmark script does not compile.");
+        }
+        return program;
+    }
+
+    static Token identifier(String name) {
+        return new Token(TokenType.IDENTIFIER, name, null, 1);
+    }
+}